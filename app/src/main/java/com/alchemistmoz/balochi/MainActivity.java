@@ -10,6 +10,8 @@ import com.alchemistmoz.balochi.categories.family.FamilyActivity;
 import com.alchemistmoz.balochi.categories.fruitveggies.FruitVeggiesActivity;
 import com.alchemistmoz.balochi.categories.numbers.NumbersActivity;
 import com.alchemistmoz.balochi.misc.CustomToolbar;
+import com.alchemistmoz.balochi.misc.InputArbiter;
+import com.alchemistmoz.balochi.misc.SoundBank;
 import com.alchemistmoz.balochi.misc.SoundPlayback;
 import com.alchemistmoz.balochi.misc.Utilities;
 
@@ -24,6 +26,9 @@ public class MainActivity extends AppCompatActivity {
     // Make recyclerView global so that animations can be run from onResume
     RecyclerView recyclerView;
 
+    // Decides what happens to the taps on the menu
+    InputArbiter inputArbiter;
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -36,9 +41,11 @@ public class MainActivity extends AppCompatActivity {
         // Initialize the Audio Manager AUDIO_SERVICE
         SoundPlayback.initializeManagerService(this);
 
+        inputArbiter = Utilities.createMenuInputArbiter(this);
+
         initiateMenu();
 
-        Utilities.addMenuItemClickSupport(recyclerView);
+        Utilities.addMenuItemClickSupport(recyclerView, inputArbiter);
 
     }
 
@@ -70,8 +77,18 @@ public class MainActivity extends AppCompatActivity {
         // Specify an adapter
         recyclerView.setAdapter(adapter);
 
-        Utilities.runSlideLeftAnim(recyclerView);
+        Utilities.runSlideLeftAnim(recyclerView, inputArbiter);
+
+    }
+
+    /**
+     * Keep the menu sounds ready for playback.
+     */
+    @Override
+    protected void onResume() {
+        super.onResume();
 
+        SoundPlayback.loadCategory(this, SoundBank.COMMON);
     }
 
     /**
@@ -82,14 +99,14 @@ public class MainActivity extends AppCompatActivity {
     protected void onPause() {
         super.onPause();
 
-        // Release the media player resources
-        SoundPlayback.releaseMediaPlayer();
+        // Stop the sound that is playing, the players are kept for the next activity
+        SoundPlayback.stop();
 
         // Remove all pending posts of callbacks and sent messages.
         Utilities.removePendingPosts();
 
         // Enable all touch events (in case touch was disabled right before onPause)
-        Utilities.setTouchEnabled(true);
+        inputArbiter.reset();
     }
 
 }
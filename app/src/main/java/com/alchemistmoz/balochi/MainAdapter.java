@@ -6,7 +6,8 @@ import android.support.v7.widget.RecyclerView;
 import android.view.LayoutInflater;
 import android.view.ViewGroup;
 import android.widget.ImageView;
-import com.bumptech.glide.Glide;
+
+import com.alchemistmoz.balochi.misc.ItemImageLoader;
 
 import java.util.ArrayList;
 
@@ -20,7 +21,7 @@ public class MainAdapter extends RecyclerView.Adapter<MainAdapter.ViewHolder> {
 
     private ArrayList<Category> mData;
     private LayoutInflater mInflater;
-    private Context context;
+    private ItemImageLoader imageLoader;
 
     /**
      * Stores and recycles views as they are scrolled off screen.
@@ -58,9 +59,9 @@ public class MainAdapter extends RecyclerView.Adapter<MainAdapter.ViewHolder> {
      * @param data - Data list to be used for the recyclerView.
      */
     public MainAdapter(Context context, ArrayList<Category> data) {
-        this.context = context;
         this.mInflater = LayoutInflater.from(context);
         this.mData = data;
+        this.imageLoader = new ItemImageLoader(context, R.layout.category_item);
     }
 
     /**
@@ -91,10 +92,8 @@ public class MainAdapter extends RecyclerView.Adapter<MainAdapter.ViewHolder> {
     @Override
     public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
 
-        // Load current category image to categoryImageView using Glide library
-        Glide.with(context)
-                .load(getItem(position).getImageResourceID())
-                .into(holder.categoryImageView);
+        // Load current category image to categoryImageView, at the size of the cell
+        imageLoader.load(getItem(position).getImageResourceID(), holder.categoryImageView);
     }
 
     /**
@@ -7,6 +7,8 @@ import android.support.v7.widget.RecyclerView;
 import com.alchemistmoz.balochi.Category;
 import com.alchemistmoz.balochi.MainAdapter;
 import com.alchemistmoz.balochi.misc.CustomToolbar;
+import com.alchemistmoz.balochi.misc.InputArbiter;
+import com.alchemistmoz.balochi.misc.SoundBank;
 import com.alchemistmoz.balochi.misc.SoundPlayback;
 import com.alchemistmoz.balochi.R;
 import com.alchemistmoz.balochi.misc.Utilities;
@@ -18,6 +20,9 @@ public class ColorsActivity extends AppCompatActivity {
     // Make recyclerView global so that animations can be run from onResume
     RecyclerView recyclerView;
 
+    // Decides what happens to the taps on the menu
+    InputArbiter inputArbiter;
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -30,9 +35,11 @@ public class ColorsActivity extends AppCompatActivity {
         // Initialize the Audio Manager AUDIO_SERVICE
         SoundPlayback.initializeManagerService(this);
 
+        inputArbiter = Utilities.createMenuInputArbiter(this);
+
         initiateMenu();
 
-        Utilities.addMenuItemClickSupport(recyclerView);
+        Utilities.addMenuItemClickSupport(recyclerView, inputArbiter);
     }
 
     /**
@@ -58,7 +65,18 @@ public class ColorsActivity extends AppCompatActivity {
         final MainAdapter adapter = new MainAdapter(this, categories);
         recyclerView.setAdapter(adapter);
 
-        Utilities.runSlideLeftAnim(recyclerView);
+        Utilities.runSlideLeftAnim(recyclerView, inputArbiter);
+    }
+
+    /**
+     * Keep the sounds of the category ready for playback, they stay loaded
+     * while the games of the category are played.
+     */
+    @Override
+    protected void onResume() {
+        super.onResume();
+
+        SoundPlayback.loadCategory(this, SoundBank.COLORS);
     }
 
     /**
@@ -69,13 +87,18 @@ public class ColorsActivity extends AppCompatActivity {
     protected void onPause() {
         super.onPause();
 
-        // Release the media player resources
-        SoundPlayback.releaseMediaPlayer();
+        // Stop the sound that is playing, the players are kept for the next activity
+        SoundPlayback.stop();
 
         // Remove all pending posts of callbacks and sent messages.
         Utilities.removePendingPosts();
 
         // Enable all touch events (in case touch was disabled right before onPause)
-        Utilities.setTouchEnabled(true);
+        inputArbiter.reset();
+
+        if (isFinishing()) {
+            // Leaving the category, free the memory of its sounds
+            SoundPlayback.unloadCategory(this);
+        }
     }
 }
@@ -75,20 +75,33 @@ public class MemoryActivity extends AppCompatActivity {
         // Set adapter to be used for the memory game
         memoryGame.useAdapter(adapter);
 
-        GameUtils.runSlideUpAnim(recyclerView, GameUtils.MEMORY);
+        GameUtils.runSlideUpAnim(recyclerView, GameUtils.MEMORY, memoryGame.getInputArbiter());
 
     }
 
     /**
-     * Clean up the media player when activity is paused and remove
+     * Start the audio session of the game when activity is resumed, so that the
+     * first sound is as quick as the rest.
+     */
+    @Override
+    protected void onResume() {
+        super.onResume();
+
+        // Warm up the audio output and hold the audio focus while the game is visible
+        SoundPlayback.startSession(this);
+    }
+
+    /**
+     * End the audio session when activity is paused and remove
      * the pending posts when activity is set to finish.
      */
     @Override
     protected void onPause() {
         super.onPause();
 
-        // Release the media player resources
-        SoundPlayback.releaseMediaPlayer();
+        // Stop the sound that is playing and let go of the audio focus and output,
+        // the players are kept for the next activity
+        SoundPlayback.endSession();
 
         if (isFinishing()) {
             // Remove all pending posts of callbacks and sent messages.
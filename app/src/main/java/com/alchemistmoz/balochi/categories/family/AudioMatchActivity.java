@@ -82,20 +82,33 @@ public class AudioMatchActivity extends AppCompatActivity {
         // Set adapter to be used for the game
         audioMatchGame.useAdapter(adapter);
 
-        GameUtils.runSlideUpAnim(recyclerView, GameUtils.AUDIOMATCH);
+        GameUtils.runSlideUpAnim(recyclerView, GameUtils.AUDIOMATCH, audioMatchGame.getInputArbiter());
 
     }
 
     /**
-     * Clean up the media player when activity is paused and remove
+     * Start the audio session of the game when activity is resumed, so that the
+     * first sound is as quick as the rest.
+     */
+    @Override
+    protected void onResume() {
+        super.onResume();
+
+        // Warm up the audio output and hold the audio focus while the game is visible
+        SoundPlayback.startSession(this);
+    }
+
+    /**
+     * End the audio session when activity is paused and remove
      * the pending posts when activity is set to finish.
      */
     @Override
     protected void onPause() {
         super.onPause();
 
-        // Release the media player resources
-        SoundPlayback.releaseMediaPlayer();
+        // Stop the sound that is playing and let go of the audio focus and output,
+        // the players are kept for the next activity
+        SoundPlayback.endSession();
 
         if (isFinishing()) {
             // Remove all pending posts of callbacks and sent messages.
@@ -7,7 +7,8 @@ import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.ImageView;
-import com.bumptech.glide.Glide;
+
+import com.alchemistmoz.balochi.misc.ItemImageLoader;
 
 import java.util.ArrayList;
 
@@ -25,8 +26,8 @@ public class GameAdapter extends RecyclerView.Adapter<GameAdapter.ViewHolder> {
 
     private ArrayList<GameItem> mData;
     private LayoutInflater mInflater;
-    private Context context;
     private int itemLayout;
+    private ItemImageLoader imageLoader;
 
     /**
      * Stores and recycles views as they are scrolled off screen.
@@ -60,12 +61,13 @@ public class GameAdapter extends RecyclerView.Adapter<GameAdapter.ViewHolder> {
      *
      * @param context - Activity context.
      * @param data - Data list to be used for the recyclerView.
+     * @param itemLayout - Layout of the items, its size is set by dimens.
      */
     public GameAdapter(Context context, ArrayList<GameItem> data, int itemLayout) {
-        this.context = context;
         this.mInflater = LayoutInflater.from(context);
         this.mData = data;
         this.itemLayout = itemLayout;
+        this.imageLoader = new ItemImageLoader(context, itemLayout);
 
     }
 
@@ -104,10 +106,8 @@ public class GameAdapter extends RecyclerView.Adapter<GameAdapter.ViewHolder> {
             holder.countItem.setVisibility(View.VISIBLE);
         }
 
-        // Load current image to countItem using Glide library
-        Glide.with(context)
-                .load(getItem(position).getImageResourceID())
-                .into(holder.countItem);
+        // Load current image to countItem, at the size of the cell
+        imageLoader.load(getItem(position).getImageResourceID(), holder.countItem);
     }
 
     /**
@@ -128,4 +128,11 @@ public class GameAdapter extends RecyclerView.Adapter<GameAdapter.ViewHolder> {
         return mData.get(position);
     }
 
+    /**
+     * @return the loader of the item images, to be used for preloading them.
+     */
+    public ItemImageLoader getImageLoader() {
+        return imageLoader;
+    }
+
 }
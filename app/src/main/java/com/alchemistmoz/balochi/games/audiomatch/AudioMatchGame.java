@@ -11,8 +11,12 @@ import android.widget.ImageView;
 import com.alchemistmoz.balochi.R;
 import com.alchemistmoz.balochi.games.GameAdapter;
 import com.alchemistmoz.balochi.games.GameItem;
-import com.alchemistmoz.balochi.misc.GameUtils;
+import com.alchemistmoz.balochi.misc.InputArbiter;
+import com.alchemistmoz.balochi.misc.PlaybackWaiter;
+import com.alchemistmoz.balochi.misc.RoundPrefetcher;
 import com.alchemistmoz.balochi.misc.SoundPlayback;
+import com.alchemistmoz.balochi.misc.SoundSequence;
+import com.alchemistmoz.balochi.misc.TapLatency;
 import com.alchemistmoz.balochi.misc.Utilities;
 import com.bumptech.glide.Glide;
 
@@ -53,14 +57,20 @@ import java.util.Collections;
  *   .useAdapter(adapter).
  *
  * - Run slide up animations:
- *          GameUtils.runSlideUpAnim(recyclerView, GameUtils.AUDIOMATCH);
+ *          GameUtils.runSlideUpAnim(recyclerView, GameUtils.AUDIOMATCH,
+ *                  audioMatchGame.getInputArbiter());
  *
  * - Add ItemClickSupport via GameUtils:
  *          GameUtils.addAudioMatchItemClickSupport(recyclerView, audioMatchGame);
  *
+ * - Add the following in onResume() of the activity:
+ *         // Warm up the audio output and hold the audio focus while the game is visible
+ *         SoundPlayback.startSession(this);
+ *
  * - Add the following in onPause() of the activity:
- *           // Release the media player resources
- *         SoundPlayback.releaseMediaPlayer();
+ *         // Stop the sound that is playing and let go of the audio focus and output,
+ *         // the players are kept for the next activity
+ *         SoundPlayback.endSession();
  *
  *         if (isFinishing()) {
  *             // Remove all pending posts of callbacks and sent messages.
@@ -74,6 +84,12 @@ public class AudioMatchGame {
     private static final int LEVEL_ONE = 2;
     private static final int LEVEL_TWO = 4;
 
+    // Delay in milliseconds before the first intro, so that the slide up animation can be seen
+    private static final int INTRO_DELAY = 800;
+
+    // Silence in milliseconds between the correct answer sound and the intro of the next round
+    private static final int INTRO_GAP = 150;
+
     // Current level in the game
     private int currentLevel;
 
@@ -89,6 +105,10 @@ public class AudioMatchGame {
     // The gameItems that will be visible during each round of the game
     private ArrayList<GameItem> actualItems;
 
+    // The gameItems of the next round and its correct word, generated one round ahead
+    private ArrayList<GameItem> nextItems;
+    private int nextCorrectItemId;
+
     // Image of the speaker phone to be displayed to the top of the screen
     private ImageView speakerPhoneView;
 
@@ -106,9 +126,42 @@ public class AudioMatchGame {
     // To be used for delaying posts
     private Handler handler;
 
-    // Allow for delaying the intro for each round and thus providing a better user experience
+    // Allow for delaying the intro of the first round and thus providing a better user experience
     private Runnable introRunnable;
 
+    // Continues the game once the sound it is waiting on has ended
+    private PlaybackWaiter playbackWaiter = new PlaybackWaiter();
+
+    // Decides what happens to the taps while the game is busy
+    private InputArbiter inputArbiter;
+
+    // Warms the caches for the images and sounds of the next round
+    private RoundPrefetcher roundPrefetcher;
+
+    // Enable touch events after sound playback
+    private Runnable enableTouchRunnable = new Runnable() {
+        @Override
+        public void run() {
+            inputArbiter.setEnabled(true);
+        }
+    };
+
+    // Play the sound of the correct item again, when the speaker phone is selected
+    private Runnable playSpeakerPhoneRunnable = new Runnable() {
+        @Override
+        public void run() {
+
+            // Disable further touch events
+            inputArbiter.setEnabled(false);
+
+            Utilities.runOnTouchAnim(context, speakerPhoneView);
+
+            // Initialize playback of the sound of the correctItem and
+            // enable touch events after playback is finished
+            playbackWaiter.play(context, speakerPhoneObject.getAudioResourceID(), enableTouchRunnable);
+        }
+    };
+
     /**
      * Sets the game off by initiating default values and the ArrayLists that will be used
      * in the game.
@@ -124,6 +177,9 @@ public class AudioMatchGame {
 
         context = recyclerView.getContext();
 
+        inputArbiter = new InputArbiter(context, playbackWaiter);
+        roundPrefetcher = new RoundPrefetcher(context);
+
         // Start the game of with the first level
         currentLevel = LEVEL_ONE;
 
@@ -142,15 +198,17 @@ public class AudioMatchGame {
         };
 
         actualItems = new ArrayList<>();
+        nextItems = new ArrayList<>();
 
         // Initiate the first round of the game
         initiateSpeakerPhoneView();
+        generateNextItems(currentLevel);
         generateActualItems();
 
         // Disable touch during intro
-        GameUtils.setTouchEnabled(false);
+        inputArbiter.setEnabled(false);
 
-        handler.postDelayed(introRunnable, 800);
+        handler.postDelayed(introRunnable, INTRO_DELAY);
     }
 
 
@@ -169,55 +227,75 @@ public class AudioMatchGame {
             @Override
             public void onClick(View view) {
 
-                if (GameUtils.isTouchEnabled()) {
-
-                    // Disable further touch events
-                    GameUtils.setTouchEnabled(false);
+                TapLatency.markTap();
 
-                    Utilities.runOnTouchAnim(context, speakerPhoneView);
+                inputArbiter.submit(playSpeakerPhoneRunnable);
+            }
+        });
+    }
 
-                    // Initialize playback of the sound of the correctItem
-                    SoundPlayback.play(context, speakerPhoneObject.getAudioResourceID());
+    /**
+     * Take the game Items that will be used to interact with in the game for one round,
+     * then generate the items of the round after it and prefetch them.
+     */
+    private void generateActualItems() {
 
-                    // Enable touch events after playback is finished
-                    handler.postDelayed(new Runnable() {
-                        @Override
-                        public void run() {
+        // The items of this round have been generated one round ahead
+        actualItems.addAll(nextItems);
 
-                            GameUtils.setTouchEnabled(true);
+        correctItemId = nextCorrectItemId;
+        speakerPhoneObject.setAudioResourceID(correctItemId);
 
-                        }
-                    }, SoundPlayback.getSoundDuration());
-                }
-            }
-        });
+        generateNextItems(getLevelAfter(currentLevel));
+        prefetchNextRound();
     }
 
     /**
-     * Generate the game Items that will be used to interact with in the game for one round.
+     * Generate the game Items of a round at the given level.
+     *
+     * @param level - number of items in the round.
      */
-    private void generateActualItems() {
+    private void generateNextItems(int level) {
+
+        nextItems.clear();
 
         // Shuffle the game items in order to randomize the words of
         // each new round.
         Collections.shuffle(gameItems);
 
-        // Generate list of items to be used for the current level
-        for (int x = 0; x < currentLevel; x++) {
+        // Generate list of items to be used for the level
+        for (int x = 0; x < level; x++) {
 
             GameItem currentItem = gameItems.get(x);
 
             // Add a new instance of the current item
-            actualItems.add(new GameItem(currentItem.getImageResourceID(), currentItem.getAudioResourceID()));
+            nextItems.add(new GameItem(currentItem.getImageResourceID(), currentItem.getAudioResourceID()));
         }
 
         // First item in the list is chosen as the correct word item
-        correctItemId = actualItems.get(0).getAudioResourceID();
-        speakerPhoneObject.setAudioResourceID(correctItemId);
+        nextCorrectItemId = nextItems.get(0).getAudioResourceID();
 
         // Shuffle list again so that they are presented
         // in a random order.
-        Collections.shuffle(actualItems);
+        Collections.shuffle(nextItems);
+    }
+
+    /**
+     * Warm the caches for the images and sounds of the next round, while the current
+     * round is played. The round starts with the correct answer sound followed by
+     * its intro, see playCelebrationAndIntro().
+     */
+    private void prefetchNextRound() {
+
+        roundPrefetcher.clear();
+        roundPrefetcher.addSequence(createCelebrationAndIntro(nextCorrectItemId));
+
+        for (GameItem item : nextItems) {
+            roundPrefetcher.addImage(item.getImageResourceID())
+                    .addSound(item.getAudioResourceID());
+        }
+
+        roundPrefetcher.schedule();
     }
 
     /**
@@ -234,6 +312,14 @@ public class AudioMatchGame {
      */
     public void useAdapter(GameAdapter recyclerViewAdapter) {
         viewAdapter = recyclerViewAdapter;
+        roundPrefetcher.useImageLoader(recyclerViewAdapter.getImageLoader());
+    }
+
+    /**
+     * @return the InputArbiter that the taps of the game are handed to.
+     */
+    public InputArbiter getInputArbiter() {
+        return inputArbiter;
     }
 
     /**
@@ -241,59 +327,80 @@ public class AudioMatchGame {
      */
     private void playCorrectItemIntro() {
 
-        // Initialize playback of the intro if window is in focus
-        playSound(correctItemId);
+        // Initialize playback of the intro if window is in focus and
+        // enable touch events after sound playback
+        playSound(correctItemId, enableTouchRunnable);
 
-        // Enable touch events after sound playback
-        handler.postDelayed(new Runnable() {
-            @Override
-            public void run() {
-                GameUtils.setTouchEnabled(true);
-            }
-        }, SoundPlayback.getSoundDuration());
+    }
+
+    /**
+     * Start the sound of the pressed item in the press-to-play mode. The game state is
+     * left alone until the press is committed with selectItem().
+     *
+     * @param position - of the view that the user has pressed
+     */
+    public void pressItem(int position) {
+
+        if (position == -1) return;
 
+        if (inputArbiter.isEnabled()) {
+            SoundPlayback.preview(context, actualItems.get(position).getAudioResourceID());
+        }
     }
 
     /**
-     * Play the sound of the selected item and check if it
-     * matches with the correct item.
+     * Hand the selection to the InputArbiter, which decides when it is handled.
      *
      * @param position - of the view that the user has selected
      * @param view - actual view the user has selected
      */
-    public void selectItem(final int position, View view) {
+    public void selectItem(final int position, final View view) {
 
         // "Catch" ArrayIndexOutOfBoundsException when index = -1
         // and basically make the selection void.
         if (position == -1) return;
 
-        // Store the gameItem that the user has currently selected
-        GameItem selectedItem = actualItems.get(position);
+        TapLatency.markSelect();
 
-        if (GameUtils.isTouchEnabled()) {
+        inputArbiter.submit(new Runnable() {
+            @Override
+            public void run() {
+                handleSelection(position, view);
+            }
+        });
+    }
 
-            // Disable further touch events
-            GameUtils.setTouchEnabled(false);
+    /**
+     * Play the sound of the selected item and check if it
+     * matches with the correct item.
+     *
+     * @param position - of the view that the user has selected
+     * @param view - actual view the user has selected
+     */
+    private void handleSelection(int position, View view) {
 
-            Utilities.runOnTouchAnim(context, view);
+        // Store the gameItem that the user has currently selected
+        GameItem selectedItem = actualItems.get(position);
 
-            // Initialize playback of the sound related to the item the user has selected
-            SoundPlayback.play(context, selectedItem.getAudioResourceID());
+        // Disable further touch events
+        inputArbiter.setEnabled(false);
 
-            // Store the resource id for the selected item
-            selectedItemId = selectedItem.getAudioResourceID();
+        Utilities.runOnTouchAnim(context, view);
 
-            // Check game status, touch events are enabled again
-            // somewhere along the line in checkSelections().
-            handler.postDelayed(new Runnable() {
-                @Override
-                public void run() {
+        // Store the resource id for the selected item
+        selectedItemId = selectedItem.getAudioResourceID();
 
-                    checkSelections();
+        // Initialize playback of the sound related to the item the user has selected
+        // and check game status after playback. Touch events are enabled again
+        // somewhere along the line in checkSelections().
+        playbackWaiter.play(context, selectedItem.getAudioResourceID(), new Runnable() {
+            @Override
+            public void run() {
 
-                }
-            }, SoundPlayback.getSoundDuration());
-        }
+                checkSelections();
+
+            }
+        });
     }
 
     /**
@@ -302,44 +409,69 @@ public class AudioMatchGame {
     private void checkSelections() {
         if (selectedItemId == correctItemId) {
 
-            // Celebrate and initiate the next round
-            playSound(R.raw.correct_answer3);
+            // Initiate the next round and celebrate
             nextRound();
 
         } else {
 
-            // Playback of the error sound
-            playSound(R.raw.wrong_answer);
-
             // Reset the current selection
             selectedItemId = 0;
 
-            // Enable touch events because the wrong answer was given
-            handler.postDelayed(new Runnable() {
-                @Override
-                public void run() {
-
-                    GameUtils.setTouchEnabled(true);
-
-                }
-            }, SoundPlayback.getSoundDuration());
+            // Playback of the error sound, then enable touch events
+            // because the wrong answer was given
+            playSound(R.raw.wrong_answer, enableTouchRunnable);
         }
     }
 
     /**
      * Play the given sound only if the window currently has focus.
-     * The sound to be played should be either in celebration or for
+     * The sound to be played should be either the intro or for
      * wrong answers.
      *
      * @param audioResourceId - Resource Id for the sound to be played.
+     * @param next - to be run after sound playback.
      */
-    private void playSound(int audioResourceId) {
+    private void playSound(int audioResourceId, Runnable next) {
+
+        if (!recyclerView.hasWindowFocus()) {
+
+            // Nothing is played, so there is nothing to wait for
+            next.run();
+
+        } else {
+            playbackWaiter.play(context, audioResourceId, next);
+        }
+    }
+
+    /**
+     * Play the correct answer sound followed by the intro of the next round, as one sound.
+     * The correct answer sound lasts about as long as the slide up animation, so the intro
+     * starts once the new items are in place.
+     */
+    private void playCelebrationAndIntro() {
+
+        if (!recyclerView.hasWindowFocus()) {
 
-        if (recyclerView.hasWindowFocus()) {
-            SoundPlayback.play(context, audioResourceId);
+            // Nothing is played, so there is nothing to wait for
+            enableTouchRunnable.run();
+
+        } else {
+            // Enable touch events after the intro
+            playbackWaiter.play(context, createCelebrationAndIntro(correctItemId), enableTouchRunnable);
         }
     }
 
+    /**
+     * @param correctItemId - audio res id for the correct word of the round.
+     * @return the correct answer sound followed by the intro of the round.
+     */
+    private static SoundSequence createCelebrationAndIntro(int correctItemId) {
+        return new SoundSequence()
+                .add(R.raw.correct_answer3)
+                .addGap(INTRO_GAP)
+                .add(correctItemId);
+    }
+
     /**
      * Initiate the next round of the game by generating new items and updating the UI.
      */
@@ -353,6 +485,9 @@ public class AudioMatchGame {
         // Initiate a new round of the game
         generateActualItems();
 
+        // Taps that are kept were meant for the items of the old round
+        inputArbiter.clearQueue();
+
         // Update UI
         viewAdapter.notifyDataSetChanged();
 
@@ -360,9 +495,9 @@ public class AudioMatchGame {
         runLayoutAnimation();
 
         // Disable touch during intro
-        GameUtils.setTouchEnabled(false);
+        inputArbiter.setEnabled(false);
 
-        handler.postDelayed(introRunnable, 800);
+        playCelebrationAndIntro();
 
     }
 
@@ -384,13 +519,21 @@ public class AudioMatchGame {
      * then in reverse.
      */
     private void nextLevel() {
-        if (currentLevel == LEVEL_ONE) {
+        currentLevel = getLevelAfter(currentLevel);
+    }
+
+    /**
+     * @param level - level of a round.
+     * @return level of the round after it.
+     */
+    private static int getLevelAfter(int level) {
+        if (level == LEVEL_ONE) {
 
-            currentLevel = LEVEL_TWO;
+            return LEVEL_TWO;
 
-        } else if (currentLevel == LEVEL_TWO) {
+        } else {
 
-            currentLevel = LEVEL_ONE;
+            return LEVEL_ONE;
         }
     }
 
@@ -416,5 +559,9 @@ public class AudioMatchGame {
             handler.removeCallbacksAndMessages(null);
 
         }
+
+        playbackWaiter.cancel();
+        inputArbiter.clearQueue();
+        roundPrefetcher.cancel();
     }
 }
\ No newline at end of file
@@ -10,7 +10,7 @@ import android.view.ViewGroup;
 import android.widget.ImageView;
 
 import com.alchemistmoz.balochi.R;
-import com.bumptech.glide.Glide;
+import com.alchemistmoz.balochi.misc.ItemImageLoader;
 
 import java.util.ArrayList;
 
@@ -27,7 +27,7 @@ public class MemoryAdapter extends RecyclerView.Adapter<MemoryAdapter.ViewHolder
 
     private ArrayList<MemoryCard> mData;
     private LayoutInflater mInflater;
-    private Context context;
+    private ItemImageLoader imageLoader;
 
     /**
      * Stores and recycles views as they are scrolled off screen.
@@ -67,9 +67,9 @@ public class MemoryAdapter extends RecyclerView.Adapter<MemoryAdapter.ViewHolder
      * @param data - Data list to be used for the recyclerView.
      */
     public MemoryAdapter(Context context, ArrayList<MemoryCard> data) {
-        this.context = context;
         this.mInflater = LayoutInflater.from(context);
         this.mData = data;
+        this.imageLoader = new ItemImageLoader(context, R.layout.memory_item);
     }
 
     /**
@@ -107,10 +107,8 @@ public class MemoryAdapter extends RecyclerView.Adapter<MemoryAdapter.ViewHolder
             holder.memoryCard.setVisibility(View.VISIBLE);
         }
 
-        // Load current image to categoryImageView using Glide library
-        Glide.with(context)
-                .load(getItem(position).getImageResourceID())
-                .into(holder.memoryCard);
+        // Load current image to memoryCard, at the size of the cell
+        imageLoader.load(getItem(position).getImageResourceID(), holder.memoryCard);
     }
 
     /**
@@ -131,4 +129,11 @@ public class MemoryAdapter extends RecyclerView.Adapter<MemoryAdapter.ViewHolder
         return mData.get(position);
     }
 
+    /**
+     * @return the loader of the item images, to be used for preloading them.
+     */
+    public ItemImageLoader getImageLoader() {
+        return imageLoader;
+    }
+
 }
\ No newline at end of file
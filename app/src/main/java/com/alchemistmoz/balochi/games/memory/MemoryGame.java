@@ -1,7 +1,6 @@
 package com.alchemistmoz.balochi.games.memory;
 
 import android.content.Context;
-import android.os.Handler;
 import android.support.v7.app.AppCompatActivity;
 import android.support.v7.widget.GridLayoutManager;
 import android.support.v7.widget.RecyclerView;
@@ -10,8 +9,11 @@ import android.view.animation.LayoutAnimationController;
 
 import com.alchemistmoz.balochi.misc.CustomGridLayoutManager;
 import com.alchemistmoz.balochi.R;
-import com.alchemistmoz.balochi.misc.GameUtils;
+import com.alchemistmoz.balochi.misc.InputArbiter;
+import com.alchemistmoz.balochi.misc.PlaybackWaiter;
+import com.alchemistmoz.balochi.misc.RoundPrefetcher;
 import com.alchemistmoz.balochi.misc.SoundPlayback;
+import com.alchemistmoz.balochi.misc.TapLatency;
 
 import java.util.ArrayList;
 import java.util.Collections;
@@ -43,14 +45,19 @@ import java.util.Collections;
  *   .useAdapter(adapter).
  *
  * - Run slide up animation for all items:
- *          GameUtils.runSlideUpAnim(recyclerView, GameUtils.MEMORY);
+ *          GameUtils.runSlideUpAnim(recyclerView, GameUtils.MEMORY, memoryGame.getInputArbiter());
  *
  * - Add ItemClickSupport:
  *          GameUtils.addMemoryCardClickSupport(recyclerView, memoryGame);
  *
+ * - Add the following in onResume() of the activity:
+ *         // Warm up the audio output and hold the audio focus while the game is visible
+ *         SoundPlayback.startSession(this);
+ *
  * - Add the following in onPause() of the activity:
- *           // Release the media player resources
- *         SoundPlayback.releaseMediaPlayer();
+ *         // Stop the sound that is playing and let go of the audio focus and output,
+ *         // the players are kept for the next activity
+ *         SoundPlayback.endSession();
  *
  *         if (isFinishing()) {
  *             // Remove all pending posts of callbacks and sent messages.
@@ -96,6 +103,9 @@ public class MemoryGame {
     private ArrayList<MemoryCard> memoryCardItems;
     private ArrayList<MemoryCard> memoryCardPlaceholders;
 
+    // Front side of the memory cards for the next level, generated one level ahead
+    private ArrayList<MemoryCard> nextMemoryCardItems;
+
     // RecyclerView from Activity needed for running animations and fetching context
     private RecyclerView recyclerView;
 
@@ -105,8 +115,25 @@ public class MemoryGame {
     // Context of the activity from which the memory game is run
     private Context context;
 
-    // To be used for delaying posts
-    private Handler handler;
+    // Continues the game once the sound of the revealed card has ended
+    private PlaybackWaiter playbackWaiter = new PlaybackWaiter();
+
+    // Decides what happens to the taps while the game is busy
+    private InputArbiter inputArbiter;
+
+    // Warms the caches for the images and sounds of the cards that are revealed
+    private RoundPrefetcher roundPrefetcher;
+
+    // Check the selections after sound playback
+    private Runnable checkSelectionsRunnable = new Runnable() {
+        @Override
+        public void run() {
+
+            inputArbiter.setEnabled(true);
+            checkSelections();
+
+        }
+    };
 
     /**
      * Constructor that initiates the first round of the game.
@@ -120,12 +147,17 @@ public class MemoryGame {
         // Context of the activity the game is run from
         context = recyclerView.getContext();
 
+        inputArbiter = new InputArbiter(context, playbackWaiter);
+        roundPrefetcher = new RoundPrefetcher(context);
+
         // testMode(LEVEL_SIX, 5);
 
         // Generate new list of memory cards to be used for the current level
         memoryCardItems = new ArrayList<>();
         memoryCardPlaceholders = new ArrayList<>();
+        nextMemoryCardItems = new ArrayList<>();
 
+        generateNextMemoryCardFronts(currentLevel);
         generateMemoryCardFronts();
         generateMemoryCardBacks();
     }
@@ -139,21 +171,60 @@ public class MemoryGame {
     }
 
     /**
-     * Creates a list of memory cards to be used from the list of memoryCards,
-     * according to the current level.
+     * Takes the list of memory cards to be used for the current level, then generates
+     * the cards of the level after it and prefetches them.
      */
     private void generateMemoryCardFronts() {
 
+        // The cards of this level have been generated one level ahead
+        memoryCardItems.addAll(nextMemoryCardItems);
+
+        generateNextMemoryCardFronts(getLevelAfter(currentLevel));
+        prefetchCards();
+    }
+
+    /**
+     * Creates a list of memory cards to be used from the list of memoryCards,
+     * according to the given level.
+     *
+     * @param level - number of pairs of the level.
+     */
+    private void generateNextMemoryCardFronts(int level) {
+
+        nextMemoryCardItems.clear();
+
         // Shuffle MemoryCard objects in order to randomize each new level
         Collections.shuffle(memoryCards);
 
-        for (int x = 0; x < currentLevel; x++) {
-            memoryCardItems.add(memoryCards.get(x));
-            memoryCardItems.add(memoryCards.get(x));
+        for (int x = 0; x < level; x++) {
+            nextMemoryCardItems.add(memoryCards.get(x));
+            nextMemoryCardItems.add(memoryCards.get(x));
         }
 
         // Shuffle the new list so the pairs are spread around
-        Collections.shuffle(memoryCardItems);
+        Collections.shuffle(nextMemoryCardItems);
+    }
+
+    /**
+     * Warm the caches for the front sides of the cards and their sounds, while the
+     * current level is played. The cards of the next level are prefetched ahead, and
+     * those of the current level for the first level, which had no level before it.
+     */
+    private void prefetchCards() {
+
+        roundPrefetcher.clear();
+
+        for (MemoryCard card : memoryCardItems) {
+            roundPrefetcher.addImage(card.getImageResourceID())
+                    .addSound(card.getAudioResourceID());
+        }
+
+        for (MemoryCard card : nextMemoryCardItems) {
+            roundPrefetcher.addImage(card.getImageResourceID())
+                    .addSound(card.getAudioResourceID());
+        }
+
+        roundPrefetcher.schedule();
     }
 
     /**
@@ -181,41 +252,72 @@ public class MemoryGame {
      */
     public void useAdapter(MemoryAdapter recyclerViewAdapter) {
         viewAdapter = recyclerViewAdapter;
+        roundPrefetcher.useImageLoader(recyclerViewAdapter.getImageLoader());
     }
 
     /**
-     * Reveal the selected card and check if a pair match has been made.
+     * @return the InputArbiter that the taps of the game are handed to.
+     */
+    public InputArbiter getInputArbiter() {
+        return inputArbiter;
+    }
+
+    /**
+     * Start the sound of the pressed card in the press-to-play mode, if the card would be
+     * revealed. The card is only revealed once the press is committed with selectCard().
+     *
+     * @param position of the view that the user has pressed
+     */
+    public void pressCard(int position) {
+
+        if (position == -1) return;
+
+        boolean revealable = selectionOne < 0 || (selectionTwo < 0 && positionOne != position);
+
+        if (inputArbiter.isEnabled() && revealable) {
+            SoundPlayback.preview(context, memoryCardItems.get(position).getAudioResourceID());
+        }
+    }
+
+    /**
+     * Hand the selection to the InputArbiter, which decides when it is handled.
      *
      * @param position of the view that the user has selected
      */
-    public void selectCard(int position) {
+    public void selectCard(final int position) {
 
         // "Catch" ArrayIndexOutOfBoundsException when index = -1
         // and basically make the selection void.
         if (position == -1) return;
 
-        // Store the memory card that the user has selected
-        MemoryCard selectedCard = memoryCardItems.get(position);
-
-        if (GameUtils.isTouchEnabled()) {
+        TapLatency.markSelect();
 
-            // Disable further touch events
-            GameUtils.setTouchEnabled(false);
+        inputArbiter.submit(new Runnable() {
+            @Override
+            public void run() {
+                handleSelection(position);
+            }
+        });
+    }
 
-            revealCard(selectedCard, position);
+    /**
+     * Reveal the selected card and check if a pair match has been made.
+     *
+     * @param position of the view that the user has selected
+     */
+    private void handleSelection(int position) {
 
-            // Execute the following after sound playback
-            handler = new Handler();
-            handler.postDelayed(new Runnable() {
-                @Override
-                public void run() {
+        // Store the memory card that the user has selected
+        MemoryCard selectedCard = memoryCardItems.get(position);
 
-                    GameUtils.setTouchEnabled(true);
-                    checkSelections();
+        // Disable further touch events
+        inputArbiter.setEnabled(false);
 
-                }
-            }, SoundPlayback.getSoundDuration());
+        revealCard(selectedCard, position);
 
+        // Nothing to wait for if no card was revealed, e.g. the same card was selected twice
+        if (!playbackWaiter.isWaiting()) {
+            inputArbiter.setEnabled(true);
         }
 
     }
@@ -234,7 +336,8 @@ public class MemoryGame {
             // Reveal the card at the selected position
             memoryCardPlaceholders.get(position).setImageResourceID(selectedCard.getImageResourceID());
 
-            SoundPlayback.play(context, selectedCard.getAudioResourceID());
+            // The selections are checked once the sound has ended
+            playbackWaiter.play(context, selectedCard.getAudioResourceID(), checkSelectionsRunnable);
 
             // Store info about current selection
             selectionOne = selectedCard.getImageResourceID();
@@ -249,7 +352,8 @@ public class MemoryGame {
             // Reveal the card at the selected position
             memoryCardPlaceholders.get(position).setImageResourceID(selectedCard.getImageResourceID());
 
-            SoundPlayback.play(context, selectedCard.getAudioResourceID());
+            // The selections are checked once the sound has ended
+            playbackWaiter.play(context, selectedCard.getAudioResourceID(), checkSelectionsRunnable);
 
             // Store info about current selection
             selectionTwo = selectedCard.getImageResourceID();
@@ -257,6 +361,11 @@ public class MemoryGame {
 
             viewAdapter.notifyItemChanged(position);
 
+            // Celebrate under the word of the last pair of the level
+            if (selectionOne == selectionTwo && matchedPairs + 1 == currentLevel) {
+                playCelebrationSound();
+            }
+
         }
 
     }
@@ -328,55 +437,65 @@ public class MemoryGame {
     }
 
     /**
-     * Update the currentLevel to the next in line and play celebration sound.
+     * Update the currentLevel to the next in line. The celebration sound has already
+     * been played together with the word of the last pair.
      */
     private void updateNextLevel() {
         if (currentLevel == LEVEL_ONE) {
             currentLevel = LEVEL_TWO;
 
-            playCelebrationSound();
-
             layoutManager.setSpanCount(3);
 
         } else if (currentLevel == LEVEL_TWO) {
             currentLevel = LEVEL_THREE;
 
-            playCelebrationSound();
-
             layoutManager.setSpanCount(4);
 
         } else if (currentLevel == LEVEL_THREE){
             currentLevel = LEVEL_FOUR;
 
-            playCelebrationSound();
-
         } else if (currentLevel == LEVEL_FOUR){
             currentLevel = LEVEL_FIVE;
 
-            playCelebrationSound();
-
             layoutManager.setSpanCount(5);
 
         } else if (currentLevel == LEVEL_FIVE){
             currentLevel = LEVEL_SIX;
 
-            playCelebrationSound();
-
             layoutManager.setSpanCount(5);
 
-        } else {
-            playCelebrationSound();
+        }
+    }
 
+    /**
+     * @param level - the currentLevel.
+     * @return the level after it, the last level is played again.
+     */
+    private static int getLevelAfter(int level) {
+        if (level == LEVEL_ONE) {
+            return LEVEL_TWO;
+
+        } else if (level == LEVEL_TWO) {
+            return LEVEL_THREE;
+
+        } else if (level == LEVEL_THREE) {
+            return LEVEL_FOUR;
+
+        } else if (level == LEVEL_FOUR) {
+            return LEVEL_FIVE;
+
+        } else {
+            return LEVEL_SIX;
         }
     }
 
     /**
-     * Play the celebration sound only if the window currently has focus.
+     * Play the celebration sound on top of the word, only if the window currently has focus.
      */
     private void playCelebrationSound() {
 
         if (recyclerView.hasWindowFocus()) {
-            SoundPlayback.play(context, R.raw.celebration_short);
+            SoundPlayback.playOverlay(context, R.raw.celebration_short);
         }
     }
 
@@ -394,6 +513,9 @@ public class MemoryGame {
         generateMemoryCardFronts();
         generateMemoryCardBacks();
 
+        // Taps that are kept were meant for the cards of the old level
+        inputArbiter.clearQueue();
+
         // Reset the matchedPairs counter
         matchedPairs = 0;
 
@@ -443,11 +565,9 @@ public class MemoryGame {
      */
     public void removePendingPosts() {
 
-        if (handler != null) {
-
-            handler.removeCallbacksAndMessages(null);
-
-        }
+        playbackWaiter.cancel();
+        inputArbiter.clearQueue();
+        roundPrefetcher.cancel();
     }
 
 }
@@ -1,7 +1,6 @@
 package com.alchemistmoz.balochi.games.repetition;
 
 import android.content.Context;
-import android.os.Handler;
 import android.support.v7.widget.RecyclerView;
 import android.view.View;
 import android.view.animation.AnimationUtils;
@@ -11,8 +10,12 @@ import android.widget.ImageView;
 import com.alchemistmoz.balochi.R;
 import com.alchemistmoz.balochi.games.GameAdapter;
 import com.alchemistmoz.balochi.games.GameItem;
-import com.alchemistmoz.balochi.misc.GameUtils;
+import com.alchemistmoz.balochi.misc.InputArbiter;
+import com.alchemistmoz.balochi.misc.PlaybackWaiter;
+import com.alchemistmoz.balochi.misc.RoundPrefetcher;
 import com.alchemistmoz.balochi.misc.SoundPlayback;
+import com.alchemistmoz.balochi.misc.SoundSequence;
+import com.alchemistmoz.balochi.misc.TapLatency;
 import com.alchemistmoz.balochi.misc.Utilities;
 import com.bumptech.glide.Glide;
 
@@ -37,7 +40,9 @@ import java.util.ArrayList;
  *   R.id.recycler_view_count_game) static method.
  *
  * - Create a new instance of the game with two arguments, recycleView and the ImageView where
- *   the numberItems will be displayed.
+ *   the numberItems will be displayed. The final count of each round is the recording of it,
+ *   e.g. "two carrots". With the count_splice_final bool resource it is spliced at runtime
+ *   from the final number and the noun of the counted item instead.
  *
  * - Create a new instance of the GameAdapter with two arguments, context and the list of actualItems
  *   that will be used during the game. The list is obtained with countGame.getActualItems().
@@ -46,14 +51,19 @@ import java.util.ArrayList;
  *   .useAdapter(adapter).
  *
  * - Run slide up animation for all items:
- *          GameUtils.runSlideUpAnim(recyclerView, GameUtils.COUNT);
+ *          GameUtils.runSlideUpAnim(recyclerView, GameUtils.COUNT, countGame.getInputArbiter());
  *
  * - Add ItemClickSupport via GameUtils:
  *          GameUtils.addCountItemClickSupport(recyclerView, countGame);
  *
+ * - Add the following in onResume() of the activity:
+ *         // Warm up the audio output and hold the audio focus while the game is visible
+ *         SoundPlayback.startSession(this);
+ *
  * - Add the following in onPause() of the activity:
- *           // Release the media player resources
- *         SoundPlayback.releaseMediaPlayer();
+ *         // Stop the sound that is playing and let go of the audio focus and output,
+ *         // the players are kept for the next activity
+ *         SoundPlayback.endSession();
  *
  *         if (isFinishing()) {
  *             // Remove all pending posts of callbacks and sent messages.
@@ -63,6 +73,9 @@ import java.util.ArrayList;
  */
 public class CountGame {
 
+    // Overlap in milliseconds of the final number and the noun of the counted item
+    private static final int SPLICE_CROSSFADE = 30;
+
     // The current count value in the game
     private int count;
 
@@ -78,9 +91,16 @@ public class CountGame {
     // The gameItems that will be used for generating an actualItems list
     private ArrayList<GameItem> countItems;
 
+    // The recordings of the final counts, e.g. "two carrots", at the index of the countGoal - 1.
+    // Null if the number and the noun are spliced together instead.
+    private int[] finalCountsAudio;
+
     // The actualItems that will be counted at each new round
     private ArrayList<GameItem> actualItems;
 
+    // The items that will be counted in the next round, generated one round ahead
+    private ArrayList<GameItem> nextItems;
+
     // The number image to be displayed to the left of the screen
     private ImageView numberImage;
 
@@ -96,8 +116,38 @@ public class CountGame {
     // Used to store the context of the activity
     private Context context;
 
-    // To be used for delaying posts
-    private Handler handler;
+    // Continues the game once the sound it is waiting on has ended
+    private PlaybackWaiter playbackWaiter = new PlaybackWaiter();
+
+    // Decides what happens to the taps while the game is busy
+    private InputArbiter inputArbiter;
+
+    // Warms the caches for the images and sounds of the next round
+    private RoundPrefetcher roundPrefetcher;
+
+    // Enable touch events after sound playback
+    private Runnable enableTouchRunnable = new Runnable() {
+        @Override
+        public void run() {
+            inputArbiter.setEnabled(true);
+        }
+    };
+
+    // Play the sound of the current number, when the number image is selected
+    private Runnable playNumberRunnable = new Runnable() {
+        @Override
+        public void run() {
+
+            // Disable further touch events
+            inputArbiter.setEnabled(false);
+
+            Utilities.runOnTouchAnim(context, numberImage);
+
+            // Initialize playback of the sound related to the current count and
+            // enable touch events after playback is finished
+            playbackWaiter.play(context, currentNumberItem.getAudioResourceID(), enableTouchRunnable);
+        }
+    };
 
     /**
      * Sets the game off by initiating default values and the ArrayLists that will be used
@@ -115,15 +165,33 @@ public class CountGame {
 
         context = recyclerView.getContext();
 
+        countItems = createFruitVeggiesItems();
+
+        if (!context.getResources().getBoolean(R.bool.count_splice_final)) {
+            finalCountsAudio = new int[] {
+                    R.raw.numbers_one_strawberry,
+                    R.raw.numbers_two_carrots,
+                    R.raw.numbers_three_lemons,
+                    R.raw.numbers_four_mangos,
+                    R.raw.numbers_five_oranges,
+                    R.raw.numbers_six_apples,
+                    R.raw.numbers_seven_tomatoes,
+                    R.raw.numbers_eight_watermelons,
+                    R.raw.numbers_nine_strawberries,
+                    R.raw.numbers_ten_apples};
+        }
+
+        inputArbiter = new InputArbiter(context, playbackWaiter);
+        roundPrefetcher = new RoundPrefetcher(context);
+
         count = 0;
         countGoal = 1;
 
-        handler = new Handler();
-
         // Initiate the lists that will be used for the game
         initiateLists();
 
         // Initiate the first round of the game with a list of actualItems
+        generateNextItems(countGoal);
         generateActualItems();
 
         // Initiate the view to the left which will be showing the current number
@@ -162,44 +230,87 @@ public class CountGame {
         numberItems.add(new GameItem(R.drawable.numbers_nine, numbersAudio[8]));
         numberItems.add(new GameItem(R.drawable.numbers_ten, numbersAudio[9]));
 
-        // Initiate countItems list
-        countItems = new ArrayList<>();
-
-        // Add all the count actualItems that will be used for counting
-        countItems.add(new GameItem(R.drawable.fruitveggies_strawberry1, R.raw.numbers_one_strawberry));
-        countItems.add(new GameItem(R.drawable.fruitveggies_carrot1, R.raw.numbers_two_carrots));
-        countItems.add(new GameItem(R.drawable.fruitveggies_lemon1, R.raw.numbers_three_lemons));
-        countItems.add(new GameItem(R.drawable.fruitveggies_mango1, R.raw.numbers_four_mangos));
-        countItems.add(new GameItem(R.drawable.fruitveggies_orange1, R.raw.numbers_five_oranges));
-        countItems.add(new GameItem(R.drawable.fruitveggies_apple1, R.raw.numbers_six_apples));
-        countItems.add(new GameItem(R.drawable.fruitveggies_tomato1, R.raw.numbers_seven_tomatoes));
-        countItems.add(new GameItem(R.drawable.fruitveggies_watermelon1, R.raw.numbers_eight_watermelons));
-        countItems.add(new GameItem(R.drawable.fruitveggies_strawberry1, R.raw.numbers_nine_strawberries));
-        countItems.add(new GameItem(R.drawable.fruitveggies_apple1, R.raw.numbers_ten_apples));
-
         // Initiate actualItems list which will store the countable actualItems
         actualItems = new ArrayList<>();
+        nextItems = new ArrayList<>();
+    }
 
-
+    /**
+     * The items that are counted, one for each round.
+     *
+     * @return list of fruits and vegetables, with the noun of each item as its audio.
+     */
+    private static ArrayList<GameItem> createFruitVeggiesItems() {
+        ArrayList<GameItem> items = new ArrayList<>();
+
+        items.add(new GameItem(R.drawable.fruitveggies_strawberry1, R.raw.fruitveggies_strawberry));
+        items.add(new GameItem(R.drawable.fruitveggies_carrot1, R.raw.fruitveggies_carrot));
+        items.add(new GameItem(R.drawable.fruitveggies_lemon1, R.raw.fruitveggies_lemon));
+        items.add(new GameItem(R.drawable.fruitveggies_mango1, R.raw.fruitveggies_mango));
+        items.add(new GameItem(R.drawable.fruitveggies_orange1, R.raw.fruitveggies_orange));
+        items.add(new GameItem(R.drawable.fruitveggies_apple1, R.raw.fruitveggies_apple));
+        items.add(new GameItem(R.drawable.fruitveggies_tomato1, R.raw.fruitveggies_tomato));
+        items.add(new GameItem(R.drawable.fruitveggies_watermelon1, R.raw.fruitveggies_watermelon));
+        items.add(new GameItem(R.drawable.fruitveggies_strawberry1, R.raw.fruitveggies_strawberry));
+        items.add(new GameItem(R.drawable.fruitveggies_apple1, R.raw.fruitveggies_apple));
+
+        return items;
     }
 
     /**
-     * Generate a list of identical actualItems to be used for counting.
-     * Changes the actualItems each round by going through the countItems list.
+     * Take the list of identical actualItems to be used for counting, then generate the
+     * items of the round after it and prefetch them.
      */
     private void generateActualItems() {
 
-        // The current countGoal indicates how many actualItems that are needed
-        for (int x = 0; x < countGoal; x++) {
+        // The items of this round have been generated one round ahead
+        actualItems.addAll(nextItems);
+
+        generateNextItems(getGoalAfter(countGoal));
+        prefetchNextRound();
+    }
+
+    /**
+     * Generate a list of identical items to be counted up to the given goal.
+     * Changes the items each round by going through the countItems list.
+     *
+     * @param goal - the number to be counted up to in the round.
+     */
+    private void generateNextItems(int goal) {
+
+        nextItems.clear();
 
-            // The current count allows for going through the countItems in concurrent order
-            int nextCountItemIndex = count;
+        // The goal allows for going through the countItems in concurrent order,
+        // a shorter list of countItems starts over
+        GameItem currentItem = countItems.get((goal - 1) % countItems.size());
 
-            GameItem currentItem = countItems.get(nextCountItemIndex);
+        // The goal indicates how many items that are needed
+        for (int x = 0; x < goal; x++) {
 
             // Add a new instance of the current item in the countItems list
-            actualItems.add(new GameItem(currentItem.getImageResourceID(), currentItem.getAudioResourceID()));
+            nextItems.add(new GameItem(currentItem.getImageResourceID(), currentItem.getAudioResourceID()));
+        }
+    }
+
+    /**
+     * Warm the caches for the image and sounds of the next round, while the current
+     * round is played.
+     */
+    private void prefetchNextRound() {
+
+        int nextGoal = nextItems.size();
+        GameItem nextItem = nextItems.get(0);
+
+        roundPrefetcher.clear();
+        roundPrefetcher.addImage(nextItem.getImageResourceID());
+
+        // The numbers up to the goal, then the final count as it is played
+        for (int x = 0; x < nextGoal - 1; x++) {
+            roundPrefetcher.addSound(numbersAudio[x]);
         }
+        roundPrefetcher.addSequence(createFinalCountSequence(nextGoal, nextItem.getAudioResourceID()));
+
+        roundPrefetcher.schedule();
     }
 
     /**
@@ -220,27 +331,9 @@ public class CountGame {
             @Override
             public void onClick(View view) {
 
-                if (GameUtils.isTouchEnabled()) {
-
-                    // Disable further touch events
-                    GameUtils.setTouchEnabled(false);
+                TapLatency.markTap();
 
-                    Utilities.runOnTouchAnim(context, numberImage);
-
-                    // Initialize playback of the sound related to the current count
-                    SoundPlayback.play(context, currentNumberItem.getAudioResourceID());
-
-                    // Enable touch events after playback is finished
-                    handler.postDelayed(new Runnable() {
-                        @Override
-                        public void run() {
-
-                            GameUtils.setTouchEnabled(true);
-
-                        }
-                    }, SoundPlayback.getSoundDuration());
-
-                }
+                inputArbiter.submit(playNumberRunnable);
             }
         });
     }
@@ -257,45 +350,93 @@ public class CountGame {
      */
     public void useAdapter(GameAdapter recyclerViewAdapter) {
         viewAdapter = recyclerViewAdapter;
+        roundPrefetcher.useImageLoader(recyclerViewAdapter.getImageLoader());
     }
 
     /**
-     * Play the sound of the selected item and make it INVISIBLE,
-     * then check for the current status of the game.
+     * @return the InputArbiter that the taps of the game are handed to.
+     */
+    public InputArbiter getInputArbiter() {
+        return inputArbiter;
+    }
+
+    /**
+     * Start the sound of the pressed item in the press-to-play mode. The game state is
+     * left alone until the press is committed with selectItem().
+     *
+     * @param position - of the view that the user has pressed
+     */
+    public void pressItem(int position) {
+
+        if (position == -1) return;
+
+        GameItem pressedItem = actualItems.get(position);
+
+        if (inputArbiter.isEnabled() && !pressedItem.isSelected()) {
+
+            // The count that the item will have once it is selected
+            int nextCount = count + 1;
+
+            if (nextCount == countGoal) {
+                SoundPlayback.preview(context, createFinalCountSequence(nextCount, pressedItem.getAudioResourceID()));
+            } else {
+                SoundPlayback.preview(context, numbersAudio[nextCount - 1]);
+            }
+        }
+    }
+
+    /**
+     * Hand the selection to the InputArbiter, which decides when it is handled.
      *
      * @param position - of the view that the user has selected
      */
-    public void selectItem(final int position, View view) {
+    public void selectItem(final int position, final View view) {
 
         // "Catch" ArrayIndexOutOfBoundsException when index = -1
         // and basically make the selection void.
         if (position == -1) return;
 
+        TapLatency.markSelect();
+
+        inputArbiter.submit(new Runnable() {
+            @Override
+            public void run() {
+                handleSelection(position, view);
+            }
+        });
+    }
+
+    /**
+     * Play the sound of the selected item and make it INVISIBLE,
+     * then check for the current status of the game.
+     *
+     * @param position - of the view that the user has selected
+     */
+    private void handleSelection(final int position, View view) {
+
         // Store the gameItem that the user has currently selected
         GameItem selectedItem = actualItems.get(position);
 
-        if (GameUtils.isTouchEnabled() && !selectedItem.isSelected()) {
+        if (!selectedItem.isSelected()) {
 
             // Disable further touch events
-            GameUtils.setTouchEnabled(false);
+            inputArbiter.setEnabled(false);
 
             Utilities.runOnTouchAnim(context, view);
 
             // Increase the current count value
             count += 1;
 
-            // Play the sound for the count item the user has selected
-            playSelectedCountNumberSound(selectedItem.getAudioResourceID());
-
             // Set selected to true so that visibility changes to INVISIBLE
             selectedItem.setSelected(true);
 
-            // Execute the following after sound playback
-            handler.postDelayed(new Runnable() {
+            // Play the sound for the count item the user has selected and
+            // execute the following after sound playback
+            playSelectedCountNumberSound(selectedItem.getAudioResourceID(), new Runnable() {
                 @Override
                 public void run() {
 
-                    GameUtils.setTouchEnabled(true);
+                    inputArbiter.setEnabled(true);
 
                     // Update the UI
                     viewAdapter.notifyItemChanged(position);
@@ -303,20 +444,21 @@ public class CountGame {
                     checkGoal();
 
                 }
-            }, SoundPlayback.getSoundDuration());
+            });
         }
     }
 
     /**
      * Initiate playback for the user selected count number in the right order.
      *
-     * @param audioResourceId - audio res id for the current countItem.
+     * @param audioResourceId - audio res id for the noun of the current countItem.
+     * @param next - to be run after sound playback.
      */
-    private void playSelectedCountNumberSound(int audioResourceId) {
+    private void playSelectedCountNumberSound(int audioResourceId, Runnable next) {
 
         if (count == countGoal) {
             // Playback of the sound for the final number in the count series
-            SoundPlayback.play(context, audioResourceId);
+            playbackWaiter.play(context, createFinalCountSequence(count, audioResourceId), next);
 
         } else {
 
@@ -324,10 +466,43 @@ public class CountGame {
             int currentAudioIndex = (count - 1);
 
             // Playback of the sound for the current number in the count series.
-            SoundPlayback.play(context, numbersAudio[currentAudioIndex]);
+            playbackWaiter.play(context, numbersAudio[currentAudioIndex], next);
         }
     }
 
+    /**
+     * @param finalCount - the number that has been counted up to.
+     * @param audioResourceId - audio res id for the noun of the counted item.
+     * @return sequence to be played for the final number.
+     */
+    private SoundSequence createFinalCountSequence(int finalCount, int audioResourceId) {
+        int recordedAudio = finalCountsAudio != null ? finalCountsAudio[finalCount - 1] : 0;
+
+        return createFinalCountSequence(numbersAudio[finalCount - 1], recordedAudio, audioResourceId);
+    }
+
+    /**
+     * The recording of the final count. If the count has no recording, the final number
+     * is spliced together with the noun of the counted item, e.g. "two" + "carrot", into
+     * a single utterance.
+     *
+     * @param numberAudio - audio res id of the final number.
+     * @param recordedAudio - audio res id of the recording of the final count, 0 if none.
+     * @param nounAudio - audio res id for the noun of the counted item.
+     * @return sequence to be played for the final number.
+     */
+    static SoundSequence createFinalCountSequence(int numberAudio, int recordedAudio, int nounAudio) {
+        SoundSequence sequence = new SoundSequence();
+
+        if (recordedAudio != 0) {
+            return sequence.add(recordedAudio);
+        }
+
+        return sequence.add(numberAudio)
+                .addCrossfade(SPLICE_CROSSFADE)
+                .add(nounAudio);
+    }
+
     /**
      * Check if the counting goal has been reached and then initiate the next round.
      */
@@ -339,31 +514,26 @@ public class CountGame {
     }
 
     /**
-     * Update the countGoal for the next round. Unless the game has reached its final goal,
-     * in that case, play long celebration sound and reset the game.
+     * Play the celebration sound and update the countGoal for the next round. Unless the
+     * game has reached its final goal, in that case, reset the game.
      */
     private void nextGoal() {
 
-        if (countGoal == 10) {
+        // Play short celebration sound
+        playCelebrationSound(R.raw.celebration_short);
 
-            // Play long celebration sound
-            playCelebrationSound(R.raw.celebration_short);
+        if (countGoal == 10) {
 
-            // Reset the initial values for count and countGoal.
+            // Reset the initial value for count, countGoal starts over as well
             count = 0;
-            countGoal = 1;
-
-        } else if (countGoal < 10) {
-
-            // Play short celebration sound
-            playCelebrationSound(R.raw.celebration_short);
-
-            countGoal += 1;
         }
+
+        countGoal = getGoalAfter(countGoal);
     }
 
     /**
-     * Play the given celebration sound only if the window currently has focus.
+     * Play the given celebration sound only if the window currently has focus. The game
+     * doesn't wait on it, the next round can be played right away.
      *
      * @param audioResourceId - Resource Id for the celebration sound to be played.
      */
@@ -374,6 +544,14 @@ public class CountGame {
         }
     }
 
+    /**
+     * @param goal - the countGoal of a round.
+     * @return the countGoal of the round after it, the game starts over after ten.
+     */
+    private static int getGoalAfter(int goal) {
+        return goal < 10 ? goal + 1 : 1;
+    }
+
     /**
      * Initiate the next round of the game by generating new items and updating the UI.
      */
@@ -383,6 +561,9 @@ public class CountGame {
         actualItems.clear();
         generateActualItems();
 
+        // Taps that are kept were meant for the items of the old round
+        inputArbiter.clearQueue();
+
         // Next position in the numberItems list is the same as the current count value
         int nextNrPos = count;
 
@@ -422,10 +603,8 @@ public class CountGame {
      */
     public void removePendingPosts() {
 
-        if (handler != null) {
-
-            handler.removeCallbacksAndMessages(null);
-
-        }
+        playbackWaiter.cancel();
+        inputArbiter.clearQueue();
+        roundPrefetcher.cancel();
     }
  }
@@ -4,14 +4,16 @@ import android.content.Context;
 import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Color;
-import android.os.Handler;
 import android.view.MotionEvent;
 import android.view.View;
 import android.widget.ImageView;
 
 import com.alchemistmoz.balochi.R;
 import com.alchemistmoz.balochi.misc.GameUtils;
+import com.alchemistmoz.balochi.misc.InputArbiter;
+import com.alchemistmoz.balochi.misc.PlaybackWaiter;
 import com.alchemistmoz.balochi.misc.SoundPlayback;
+import com.alchemistmoz.balochi.misc.TapLatency;
 
 
 /**
@@ -44,12 +46,32 @@ import com.alchemistmoz.balochi.misc.SoundPlayback;
  *             }
  *         });
  *
+ * In the press-to-play mode, see GameUtils.isPressToPlay(), the sound of the area starts
+ * as soon as it is touched and the touch is only committed when the finger is lifted.
+ *
  */
 public class FaceGame {
 
     // The image map with the clickable areas
     private ImageView imageAreasView;
 
+    // Whether the sound of an area is started as soon as it is touched
+    private boolean pressToPlay;
+
+    // Enables touch events again once the sound of the selected area has ended
+    private PlaybackWaiter playbackWaiter = new PlaybackWaiter();
+
+    // Decides what happens to the touches while the sound of an area is playing
+    private InputArbiter inputArbiter;
+
+    // Enable touch events after sound playback
+    private Runnable enableTouchRunnable = new Runnable() {
+        @Override
+        public void run() {
+            inputArbiter.setEnabled(true);
+        }
+    };
+
     /**
      * Sets the game off by initiating default values.
      *
@@ -58,8 +80,9 @@ public class FaceGame {
     public FaceGame(ImageView imageAreasView) {
         this.imageAreasView = imageAreasView;
 
-        // Make sure touch events are enabled at the beginning of the game
-        GameUtils.setTouchEnabled(true);
+        pressToPlay = GameUtils.isPressToPlay(imageAreasView.getContext());
+
+        inputArbiter = new InputArbiter(imageAreasView.getContext(), playbackWaiter);
     }
 
     /**
@@ -77,14 +100,50 @@ public class FaceGame {
         final int eventY = (int) motionEvent.getY();
 
         // Context of the activity fetched from the view
-        Context context = view.getContext();
+        final Context context = view.getContext();
+
+        if (pressToPlay && action == MotionEvent.ACTION_DOWN && inputArbiter.isEnabled()) {
+
+            // Start the sound of the touched area, it is taken over when the finger is lifted
+            TapLatency.markTap(motionEvent.getEventTime());
+            previewAreaSound(context, getSelectedPixelColor(eventX, eventY));
+
+        } else if (pressToPlay && action == MotionEvent.ACTION_CANCEL) {
+
+            SoundPlayback.cancelPreview();
+        }
+
+        if (action == MotionEvent.ACTION_UP) {
+
+            // The finger was lifted at the time of the event
+            TapLatency.markTap(motionEvent.getEventTime());
+            TapLatency.markSelect();
+
+            inputArbiter.submit(new Runnable() {
+                @Override
+                public void run() {
 
-        if ((action == MotionEvent.ACTION_UP) && GameUtils.isTouchEnabled()) {
+                    int touchColor = getSelectedPixelColor(eventX, eventY);
 
-            int touchColor = getSelectedPixelColor(eventX, eventY);
+                    playSelectedAreaSound(context, touchColor);
+                }
+            });
 
-            playSelectedAreaSound(context, touchColor);
+        }
+    }
+
+    /**
+     * Start the sound of the touched area before the touch is committed.
+     *
+     * @param context - of the game
+     * @param touchColor - user touched color
+     */
+    private void previewAreaSound(Context context, int touchColor) {
+
+        int audioResourceId = getAreaSound(touchColor);
 
+        if (audioResourceId != 0) {
+            SoundPlayback.preview(context, audioResourceId);
         }
     }
 
@@ -97,31 +156,37 @@ public class FaceGame {
      */
     private void playSelectedAreaSound(Context context, int touchColor) {
 
+        int audioResourceId = getAreaSound(touchColor);
+
+        // Touching outside of the areas plays nothing
+        if (audioResourceId == 0) return;
+
         // Disable further touch events
-        GameUtils.setTouchEnabled(false);
-
-        if (closeMatch(Color.RED, touchColor)) SoundPlayback.play(context, R.raw.colors_red);
-        if (closeMatch(Color.MAGENTA, touchColor)) SoundPlayback.play(context, R.raw.colors_white);
-        if (closeMatch(Color.GREEN, touchColor)) SoundPlayback.play(context, R.raw.colors_green);
-        if (closeMatch(Color.BLUE, touchColor)) SoundPlayback.play(context, R.raw.colors_blue);
-        if (closeMatch(Color.BLACK, touchColor)) SoundPlayback.play(context, R.raw.colors_black);
-        if (closeMatch(Color.YELLOW, touchColor)) SoundPlayback.play(context, R.raw.colors_yellow);
-        if (closeMatch(Color.LTGRAY, touchColor)) SoundPlayback.play(context, R.raw.colors_white);
-        if (closeMatch(Color.GRAY, touchColor)) SoundPlayback.play(context, R.raw.colors_grey);
-        if (closeMatch(Color.DKGRAY, touchColor)) SoundPlayback.play(context, R.raw.colors_black);
-        if (closeMatch(Color.CYAN, touchColor)) SoundPlayback.play(context, R.raw.colors_blue);
+        inputArbiter.setEnabled(false);
 
         // Enable touch events after sound playback
-        Handler handler = new Handler();
-        handler.postDelayed(new Runnable() {
-            @Override
-            public void run() {
+        playbackWaiter.play(context, audioResourceId, enableTouchRunnable);
 
-                GameUtils.setTouchEnabled(true);
-
-            }
-        }, SoundPlayback.getSoundDuration());
+    }
 
+    /**
+     * @param touchColor - user selected color
+     * @return the sound of the area with the given color, 0 if there is none.
+     */
+    private int getAreaSound(int touchColor) {
+
+        if (closeMatch(Color.RED, touchColor)) return R.raw.colors_red;
+        if (closeMatch(Color.MAGENTA, touchColor)) return R.raw.colors_white;
+        if (closeMatch(Color.GREEN, touchColor)) return R.raw.colors_green;
+        if (closeMatch(Color.BLUE, touchColor)) return R.raw.colors_blue;
+        if (closeMatch(Color.BLACK, touchColor)) return R.raw.colors_black;
+        if (closeMatch(Color.YELLOW, touchColor)) return R.raw.colors_yellow;
+        if (closeMatch(Color.LTGRAY, touchColor)) return R.raw.colors_white;
+        if (closeMatch(Color.GRAY, touchColor)) return R.raw.colors_grey;
+        if (closeMatch(Color.DKGRAY, touchColor)) return R.raw.colors_black;
+        if (closeMatch(Color.CYAN, touchColor)) return R.raw.colors_blue;
+
+        return 0;
     }
 
     /**
@@ -10,8 +10,11 @@ import android.view.animation.LayoutAnimationController;
 import com.alchemistmoz.balochi.R;
 import com.alchemistmoz.balochi.games.GameAdapter;
 import com.alchemistmoz.balochi.games.GameItem;
-import com.alchemistmoz.balochi.misc.GameUtils;
+import com.alchemistmoz.balochi.misc.InputArbiter;
+import com.alchemistmoz.balochi.misc.PlaybackWaiter;
+import com.alchemistmoz.balochi.misc.RoundPrefetcher;
 import com.alchemistmoz.balochi.misc.SoundPlayback;
+import com.alchemistmoz.balochi.misc.TapLatency;
 import com.alchemistmoz.balochi.misc.Utilities;
 
 import java.util.ArrayList;
@@ -47,15 +50,21 @@ import java.util.ArrayList;
  *   .useAdapter(adapter).
  *
  * - Run slide up animations:
- *          GameUtils.runSlideUpAnim(recyclerView, GameUtils.REPETITION);
+ *          GameUtils.runSlideUpAnim(recyclerView, GameUtils.REPETITION,
+ *                  repetitionGame.getInputArbiter());
  *
  *
  * - Add ItemClickSupport via GameUtils:
  *          GameUtils.addRepetitionI(recyclerView, repetitionGame);
  *
+ * - Add the following in onResume() of the activity:
+ *         // Warm up the audio output and hold the audio focus while the game is visible
+ *         SoundPlayback.startSession(this);
+ *
  * - Add the following in onPause() of the activity:
- *           // Release the media player resources
- *         SoundPlayback.releaseMediaPlayer();
+ *         // Stop the sound that is playing and let go of the audio focus and output,
+ *         // the players are kept for the next activity
+ *         SoundPlayback.endSession();
  *
  *         if (isFinishing()) {
  *             // Remove all pending posts of callbacks and sent messages.
@@ -83,6 +92,9 @@ public class RepetitionGame {
     // The gameItems that will be visible during each round of the game
     private ArrayList<GameItem> actualItems;
 
+    // The gameItems of the next round, generated one round ahead
+    private ArrayList<GameItem> nextItems;
+
     // RecyclerView from Activity needed for running animations and fetching context
     private RecyclerView recyclerView;
 
@@ -98,6 +110,23 @@ public class RepetitionGame {
     // Allow for delaying the intro for each round and thus providing a better user experience
     private Runnable introRunnable;
 
+    // Continues the game once the sound it is waiting on has ended
+    private PlaybackWaiter playbackWaiter = new PlaybackWaiter();
+
+    // Decides what happens to the taps while the game is busy
+    private InputArbiter inputArbiter;
+
+    // Warms the caches for the images and sounds of the next round
+    private RoundPrefetcher roundPrefetcher;
+
+    // Enable touch events after sound playback
+    private Runnable enableTouchRunnable = new Runnable() {
+        @Override
+        public void run() {
+            inputArbiter.setEnabled(true);
+        }
+    };
+
     /**
      * Sets the game off by initiating default values and the ArrayLists that will be used
      * in the game.
@@ -111,6 +140,9 @@ public class RepetitionGame {
 
         context = recyclerView.getContext();
 
+        inputArbiter = new InputArbiter(context, playbackWaiter);
+        roundPrefetcher = new RoundPrefetcher(context);
+
         nrOfSelectedItems = 0;
         totalNrOfSelectedItems = 0;
         currentIntroIndex = 0;
@@ -124,32 +156,75 @@ public class RepetitionGame {
         };
 
         actualItems = new ArrayList<>();
+        nextItems = new ArrayList<>();
 
         // Initiate the first round of the game with a list of actualItems
+        generateNextItems(0);
         generateActualItems();
 
         // Disable touch during intro
-        GameUtils.setTouchEnabled(false);
+        inputArbiter.setEnabled(false);
 
         // Play intro for the current round
         handler.postDelayed(introRunnable,800);
     }
 
     /**
-     * Generate the game Items that will be used to interact with in the game for one round.
+     * Take the game Items that will be used to interact with in the game for one round,
+     * then generate the items of the round after it and prefetch them.
      */
     private void generateActualItems() {
 
-        for (int x = 0; x < 2; x++) {
+        // The items of this round have been generated one round ahead
+        actualItems.addAll(nextItems);
 
-            // The totalNrOfSelectedItems allows for going through the gameItems in concurrent order
-            int index = x + totalNrOfSelectedItems;
+        // The game starts from the beginning once the end of the gameItems is reached
+        int nextIndex = totalNrOfSelectedItems + 2;
+
+        if (nextIndex == gameItems.size()) {
+            nextIndex = 0;
+        }
+
+        generateNextItems(nextIndex);
+        prefetchNextRound(nextIndex / 2);
+    }
+
+    /**
+     * Generate the game Items of the round that starts at the given index.
+     *
+     * @param firstIndex - index in the gameItems of the first item of the round.
+     */
+    private void generateNextItems(int firstIndex) {
 
-            GameItem currentItem = gameItems.get(index);
+        nextItems.clear();
+
+        for (int x = 0; x < 2; x++) {
+
+            // The index allows for going through the gameItems in concurrent order
+            GameItem currentItem = gameItems.get(x + firstIndex);
 
             // Add a new instance of the current item
-            actualItems.add(new GameItem(currentItem.getImageResourceID(), currentItem.getAudioResourceID()));
+            nextItems.add(new GameItem(currentItem.getImageResourceID(), currentItem.getAudioResourceID()));
+        }
+    }
+
+    /**
+     * Warm the caches for the images and sounds of the next round, while the current
+     * round is played.
+     *
+     * @param introIndex - index of the intro of the next round.
+     */
+    private void prefetchNextRound(int introIndex) {
+
+        roundPrefetcher.clear();
+        roundPrefetcher.addSound(intros.get(introIndex).getAudioResourceID());
+
+        for (GameItem item : nextItems) {
+            roundPrefetcher.addImage(item.getImageResourceID())
+                    .addSound(item.getAudioResourceID());
         }
+
+        roundPrefetcher.schedule();
     }
 
     /**
@@ -157,22 +232,17 @@ public class RepetitionGame {
      */
     private void playCurrentRoundIntro() {
 
-        // Initialize playback of the intro if window is in focus
+        // Initialize playback of the intro if window is in focus and
+        // enable touch events after sound playback
         if (recyclerView.hasWindowFocus()) {
-            SoundPlayback.play(context, intros.get(currentIntroIndex).getAudioResourceID());
+            playbackWaiter.play(context, intros.get(currentIntroIndex).getAudioResourceID(), enableTouchRunnable);
+        } else {
+            inputArbiter.setEnabled(true);
         }
 
         // Increment index number with one, to be used for the next round
         currentIntroIndex += 1;
 
-        // Enable touch events after sound playback
-        handler.postDelayed(new Runnable() {
-            @Override
-            public void run() {
-                GameUtils.setTouchEnabled(true);
-            }
-        }, SoundPlayback.getSoundDuration());
-
     }
 
     /**
@@ -189,27 +259,69 @@ public class RepetitionGame {
      */
     public void useAdapter(GameAdapter recyclerViewAdapter) {
         viewAdapter = recyclerViewAdapter;
+        roundPrefetcher.useImageLoader(recyclerViewAdapter.getImageLoader());
     }
 
     /**
-     * Play the sound of the selected item and make it INVISIBLE,
-     * then check for the current status of the game.
+     * @return the InputArbiter that the taps of the game are handed to.
+     */
+    public InputArbiter getInputArbiter() {
+        return inputArbiter;
+    }
+
+    /**
+     * Start the sound of the pressed item in the press-to-play mode. The game state is
+     * left alone until the press is committed with selectItem().
+     *
+     * @param position - of the view that the user has pressed
+     */
+    public void pressItem(int position) {
+
+        if (position == -1) return;
+
+        GameItem pressedItem = actualItems.get(position);
+
+        if (inputArbiter.isEnabled() && !pressedItem.isSelected()) {
+            SoundPlayback.preview(context, pressedItem.getAudioResourceID());
+        }
+    }
+
+    /**
+     * Hand the selection to the InputArbiter, which decides when it is handled.
      *
      * @param position - of the view that the user has selected
      */
-    public void selectItem(final int position, View view) {
+    public void selectItem(final int position, final View view) {
 
         // "Catch" ArrayIndexOutOfBoundsException when index = -1
         // and basically make the selection void.
         if (position == -1) return;
 
+        TapLatency.markSelect();
+
+        inputArbiter.submit(new Runnable() {
+            @Override
+            public void run() {
+                handleSelection(position, view);
+            }
+        });
+    }
+
+    /**
+     * Play the sound of the selected item and make it INVISIBLE,
+     * then check for the current status of the game.
+     *
+     * @param position - of the view that the user has selected
+     */
+    private void handleSelection(final int position, View view) {
+
         // Store the gameItem that the user has currently selected
         GameItem selectedItem = actualItems.get(position);
 
-        if (GameUtils.isTouchEnabled() && !selectedItem.isSelected()) {
+        if (!selectedItem.isSelected()) {
 
             // Disable further touch events
-            GameUtils.setTouchEnabled(false);
+            inputArbiter.setEnabled(false);
 
             Utilities.runOnTouchAnim(context, view);
 
@@ -219,18 +331,16 @@ public class RepetitionGame {
             // Incrementally increase the total number of selected items
             totalNrOfSelectedItems += 1;
 
-            // Initialize playback of the sound related to the item the user has selected
-            SoundPlayback.play(context, selectedItem.getAudioResourceID());
-
             // Set selected to true so that visibility changes to INVISIBLE
             selectedItem.setSelected(true);
 
-            // Check game status and enable touch events after sound playback
-            handler.postDelayed(new Runnable() {
+            // Initialize playback of the sound related to the item the user has selected,
+            // then check game status and enable touch events after sound playback
+            playbackWaiter.play(context, selectedItem.getAudioResourceID(), new Runnable() {
                 @Override
                 public void run() {
 
-                    GameUtils.setTouchEnabled(true);
+                    inputArbiter.setEnabled(true);
 
                     // Update the UI
                     viewAdapter.notifyItemChanged(position);
@@ -238,7 +348,7 @@ public class RepetitionGame {
                     checkGameStatus();
 
                 }
-            }, SoundPlayback.getSoundDuration());
+            });
         }
     }
 
@@ -267,6 +377,9 @@ public class RepetitionGame {
         actualItems.clear();
         generateActualItems();
 
+        // Taps that are kept were meant for the items of the old round
+        inputArbiter.clearQueue();
+
         // Reset the number of selected items
         nrOfSelectedItems = 0;
 
@@ -277,7 +390,7 @@ public class RepetitionGame {
         runLayoutAnimation();
 
         // Disable touch during intro
-        GameUtils.setTouchEnabled(false);
+        inputArbiter.setEnabled(false);
 
         // Play intro for the current round
         handler.postDelayed(introRunnable, 800);
@@ -315,5 +428,9 @@ public class RepetitionGame {
             handler.removeCallbacksAndMessages(null);
 
         }
+
+        playbackWaiter.cancel();
+        inputArbiter.clearQueue();
+        roundPrefetcher.cancel();
     }
 }
@@ -0,0 +1,972 @@
+package com.alchemistmoz.balochi.misc;
+
+import android.content.Context;
+import android.media.AudioManager;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Message;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+import android.util.SparseBooleanArray;
+
+import com.alchemistmoz.balochi.BuildConfig;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs all audio work of SoundPlayback on a dedicated audio thread.
+ *
+ * SoundPlayback posts its commands (load, play, stop and release) to the queue of
+ * the audio thread, so the main thread never blocks on loading clips, setting up
+ * decoders or requesting audio focus. The commands are handled one at a time, in
+ * the order they were posted.
+ *
+ * Clips that have been played before are played from the PcmCache through the
+ * PcmMixer, without being decoded again and at the sample rate of the audio output.
+ * Other clips are played from the SoundPoolEngine or the MediaPlayerPool, while they
+ * are decoded for the next time.
+ *
+ * A SoundSequence is rendered into a single clip in the background by the PcmSequencer,
+ * and then played through the PcmMixer as one gapless stream. The rendered clip is kept
+ * in the PcmCache, so that the same sequence is played right away the next time.
+ *
+ * Overlays, e.g. feedback effects, are played on their own voice of the PcmMixer next to
+ * the current request. They neither interrupt the current request nor are interrupted by
+ * the next one. The audio focus is held for as long as any sound is playing.
+ *
+ * A game activity holds a session from onResume() to onPause(). During a session the
+ * audio focus is held throughout instead of per sound, and the OutputKeepAlive keeps
+ * the audio output awake, so that the first sound is not later than the others. The
+ * time from each request until its playback has started is counted per session.
+ *
+ * Optional background music is looped by the MusicChannel, independently of the
+ * requests and sessions. It is ducked while a request or an overlay is playing, and
+ * only paused, not released, while the app is not visible.
+ *
+ * The engines are created on the audio thread, so their callbacks arrive there as well.
+ * The end of each request is reported back to the OnRequestEndListener on the main thread.
+ */
+final class AudioEngine implements Handler.Callback {
+
+    /**
+     * Receives the end of the requests that were started with play().
+     */
+    interface OnRequestEndListener {
+
+        /**
+         * Called on the main thread.
+         *
+         * @param token - of the request that has ended.
+         * @param event - SoundPlayback.EVENT_XXX, the reason why the request has ended.
+         */
+        void onRequestEnd(int token, int event);
+    }
+
+    // Commands that are handled on the audio thread
+    private static final int MSG_CREATE = 0;
+    private static final int MSG_LOAD_CATEGORY = 1;
+    private static final int MSG_PLAY = 2;
+    private static final int MSG_STOP = 3;
+    private static final int MSG_RELEASE = 4;
+    private static final int MSG_FOCUS_CHANGE = 5;
+    private static final int MSG_SOUND_POOL_COMPLETION = 6;
+    private static final int MSG_PLAY_SEQUENCE = 7;
+    private static final int MSG_SEQUENCE_RENDERED = 8;
+    private static final int MSG_PLAY_OVERLAY = 9;
+    private static final int MSG_OVERLAY_DECODED = 10;
+    private static final int MSG_START_SESSION = 11;
+    private static final int MSG_END_SESSION = 12;
+    private static final int MSG_START_MUSIC = 13;
+    private static final int MSG_MUSIC_DECODED = 14;
+    private static final int MSG_STOP_MUSIC = 15;
+    private static final int MSG_TAP_TRACE = 16;
+    private static final int MSG_PREFETCH = 17;
+    private static final int MSG_PREFETCH_SEQUENCE = 18;
+
+    private static final String TAG = "AudioEngine";
+
+    // Volume of the words and of the overlays, so that the words stay clear on top
+    private static final float WORD_GAIN = 1f;
+    private static final float OVERLAY_GAIN = 0.7f;
+
+    private final Context context;
+
+    /** provides access to volume and ringer mode control. */
+    private final AudioManager audioManager;
+
+    // Queue of the audio thread
+    private final Handler audioHandler;
+
+    // Delivers the end of the requests on the main thread
+    private final Handler mainHandler;
+
+    private final OnRequestEndListener listener;
+
+    // Renders the sequences and decodes the overlays off the audio thread
+    private final ExecutorService sequenceExecutor = Executors.newSingleThreadExecutor();
+
+    // Everything below is only touched on the audio thread
+
+    /** Handles playback of the short clips of the current category */
+    private SoundPoolEngine soundPoolEngine;
+
+    /** Handles playback of the sound files that are not loaded in the soundPoolEngine */
+    private MediaPlayerPool mediaPlayerPool;
+
+    /** Keeps the compressed clips of the current category in memory */
+    private ClipStore clipStore;
+
+    /** Keeps the clips that have been played decoded in memory */
+    private PcmCache pcmCache;
+
+    /** Handles playback of the clips from the pcmCache, mixed with the overlays */
+    private PcmMixer pcmMixer;
+
+    // Sample rate of the audio output, the clips in the pcmCache are resampled to it
+    private int outputSampleRate;
+
+    // The request that is currently playing, 0 if none
+    private int currentToken;
+
+    // Overlays that have been requested -> true once they are playing
+    private final SparseBooleanArray overlays = new SparseBooleanArray();
+
+    // Number of sounds that are playing, the audio focus is held while it is above 0
+    private int focusHolders;
+
+    // Whether a session is active and holds the audio focus
+    private boolean sessionActive;
+    private boolean sessionFocus;
+
+    // Name of the activity that holds the session, for the latency log
+    private String sessionName;
+
+    /** Keeps the audio output awake during a session */
+    private final OutputKeepAlive outputKeepAlive = new OutputKeepAlive();
+
+    /** Time from each request until its playback has started */
+    private final LatencyCounter latencyCounter = new LatencyCounter();
+
+    /** Loops the background music under the other sounds */
+    private final MusicChannel musicChannel;
+
+    // The music that is decoded or being decoded, 0 if none
+    private int musicResourceId;
+
+    // The decoded music, kept so that it is not decoded again when the music is restarted
+    private PcmClip musicClip;
+
+    // Whether the music is to be playing
+    private boolean musicWanted;
+
+    // Whether the music holds the audio focus
+    private boolean musicFocus;
+
+    // Uptime at which the current request was made, 0 once its playback has started
+    private long requestTime;
+
+    // Tap that triggered the next and the current request, null if none
+    private TapLatency.Trace nextTrace;
+    private TapLatency.Trace currentTrace;
+
+    // Whether the current request is played from the pcmMixer, the soundPoolEngine
+    // or the mediaPlayerPool
+    private boolean playingFromPcmCache;
+    private boolean playingFromSoundPool;
+    private boolean playingFromMediaPlayer;
+
+    // Uptime at which the clip from the soundPoolEngine ends, and the milliseconds that
+    // were left of it when it was paused for a transient loss of focus, -1 if not paused
+    private long soundPoolEndTime;
+    private long soundPoolRemaining = -1;
+
+    /**
+     * The listener gets triggered when a clip from the mediaPlayerPool has started,
+     * completed or failed. Clips of older requests have already been stopped, so only
+     * the current request is expected here.
+     */
+    private final MediaPlayerPool.OnPlayerEventListener playerEventListener = new MediaPlayerPool.OnPlayerEventListener() {
+        @Override
+        public void onPlayerStart(int requestId) {
+            if (requestId == currentToken) recordLatency();
+        }
+
+        @Override
+        public void onPlayerCompletion(int requestId) {
+            if (requestId == currentToken) finishRequest(SoundPlayback.EVENT_COMPLETION);
+        }
+
+        @Override
+        public void onPlayerError(int requestId) {
+            if (requestId == currentToken) finishRequest(SoundPlayback.EVENT_ERROR);
+        }
+    };
+
+    /**
+     * The listener gets triggered when a clip from the pcmMixer has completed, or when
+     * its voice has been taken over by another sound.
+     */
+    private final PcmMixer.OnVoiceEndListener voiceEndListener = new PcmMixer.OnVoiceEndListener() {
+        @Override
+        public void onVoiceCompletion(int requestId) {
+            if (requestId == currentToken) {
+                finishRequest(SoundPlayback.EVENT_COMPLETION);
+            } else {
+                finishOverlay(requestId, SoundPlayback.EVENT_COMPLETION);
+            }
+        }
+
+        @Override
+        public void onVoiceStolen(int requestId) {
+            // The voice already plays the new sound, so stopping the old request only
+            // reports its end and lets go of its hold on the audio focus
+            if (requestId == currentToken) {
+                finishRequest(SoundPlayback.EVENT_INTERRUPTED);
+            } else {
+                finishOverlay(requestId, SoundPlayback.EVENT_INTERRUPTED);
+            }
+        }
+    };
+
+    /**
+     * This listener gets triggered whenever the audio focus changes
+     * (i.e., we gain or lose audio focus because of another app or device).
+     * The change is handled on the audio thread, together with the other commands.
+     */
+    private final AudioManager.OnAudioFocusChangeListener audioFocusChangeListener = new AudioManager.OnAudioFocusChangeListener() {
+        @Override
+        public void onAudioFocusChange(int focusChange) {
+            audioHandler.obtainMessage(MSG_FOCUS_CHANGE, focusChange, 0).sendToTarget();
+        }
+    };
+
+    /**
+     * Start the audio thread and create the engines on it.
+     *
+     * @param context of the application.
+     * @param listener - to be notified on the main thread when a request has ended.
+     */
+    AudioEngine(Context context, OnRequestEndListener listener) {
+        this.context = context;
+        this.listener = listener;
+
+        audioManager = (AudioManager) context.getSystemService(Context.AUDIO_SERVICE);
+
+        HandlerThread audioThread = new HandlerThread("AudioThread", Process.THREAD_PRIORITY_AUDIO);
+        audioThread.start();
+
+        audioHandler = new Handler(audioThread.getLooper(), this);
+        musicChannel = new MusicChannel(audioHandler);
+
+        mainHandler = new Handler(Looper.getMainLooper(), new Handler.Callback() {
+            @Override
+            public boolean handleMessage(Message message) {
+                AudioEngine.this.listener.onRequestEnd(message.arg1, message.arg2);
+                return true;
+            }
+        });
+
+        audioHandler.sendEmptyMessage(MSG_CREATE);
+    }
+
+    /**
+     * Keep the short clips of the given category and the COMMON clips decoded in memory,
+     * and the compressed bytes of all of them.
+     */
+    void loadCategory(int[] category) {
+        audioHandler.obtainMessage(MSG_LOAD_CATEGORY, category).sendToTarget();
+    }
+
+    /**
+     * Play the given clip, the clip that is currently playing is stopped.
+     *
+     * @param trace - of the tap that triggered the sound, null if none.
+     */
+    void play(int token, int audioResourceId, TapLatency.Trace trace) {
+        sendTrace(trace);
+        audioHandler.obtainMessage(MSG_PLAY, token, audioResourceId).sendToTarget();
+    }
+
+    /**
+     * Play the clips of the given sequence as one sound, the clip that is currently
+     * playing is stopped.
+     *
+     * @param trace - of the tap that triggered the sound, null if none.
+     */
+    void playSequence(int token, SoundSequence sequence, TapLatency.Trace trace) {
+        sendTrace(trace);
+        audioHandler.obtainMessage(MSG_PLAY_SEQUENCE, token, 0, sequence).sendToTarget();
+    }
+
+    /**
+     * The trace is handled right before the request that it belongs to.
+     */
+    private void sendTrace(TapLatency.Trace trace) {
+        if (trace != null) {
+            audioHandler.obtainMessage(MSG_TAP_TRACE, trace).sendToTarget();
+        }
+    }
+
+    /**
+     * Decode the given clip into the pcmCache in the background, without playing it.
+     */
+    void prefetch(int audioResourceId) {
+        audioHandler.obtainMessage(MSG_PREFETCH, audioResourceId, 0).sendToTarget();
+    }
+
+    /**
+     * Render the given sequence into the pcmCache in the background, without playing it.
+     */
+    void prefetchSequence(SoundSequence sequence) {
+        audioHandler.obtainMessage(MSG_PREFETCH_SEQUENCE, sequence).sendToTarget();
+    }
+
+    /**
+     * Play the given clip on top of the current request, without interrupting it.
+     */
+    void playOverlay(int token, int audioResourceId) {
+        audioHandler.obtainMessage(MSG_PLAY_OVERLAY, token, audioResourceId).sendToTarget();
+    }
+
+    /**
+     * Hold the audio focus until endSession() and, if warmUp is set, keep the audio output awake.
+     *
+     * @param name - of the activity that holds the session.
+     * @param warmUp - whether to prime the audio output with silence.
+     */
+    void startSession(String name, boolean warmUp) {
+        audioHandler.obtainMessage(MSG_START_SESSION, warmUp ? 1 : 0, 0, name).sendToTarget();
+    }
+
+    /**
+     * Stop the sounds of the session and let go of its audio focus and audio output.
+     */
+    void endSession() {
+        audioHandler.sendEmptyMessage(MSG_END_SESSION);
+    }
+
+    /**
+     * Loop the given clip as background music, or continue the music if it is paused.
+     */
+    void startMusic(int audioResourceId) {
+        audioHandler.obtainMessage(MSG_START_MUSIC, audioResourceId, 0).sendToTarget();
+    }
+
+    /**
+     * Pause the background music, it is kept for the next startMusic().
+     */
+    void stopMusic() {
+        audioHandler.sendEmptyMessage(MSG_STOP_MUSIC);
+    }
+
+    /**
+     * Stop the clip that is currently playing and all overlays, if any.
+     */
+    void stop() {
+        audioHandler.sendEmptyMessage(MSG_STOP);
+    }
+
+    /**
+     * Stop the clip that is currently playing and all overlays, then release the native
+     * players. The background music is only paused.
+     */
+    void release() {
+        audioHandler.sendEmptyMessage(MSG_RELEASE);
+    }
+
+    @Override
+    public boolean handleMessage(Message message) {
+        switch (message.what) {
+            case MSG_CREATE:
+                soundPoolEngine = new SoundPoolEngine();
+                clipStore = new ClipStore(context);
+                mediaPlayerPool = new MediaPlayerPool(playerEventListener, clipStore);
+                outputSampleRate = PcmResampler.getOutputSampleRate(context);
+                pcmCache = new PcmCache(context, audioHandler, outputSampleRate, clipStore);
+                pcmMixer = new PcmMixer(audioHandler, voiceEndListener);
+                break;
+
+            case MSG_LOAD_CATEGORY:
+                soundPoolEngine.loadCategory(context, (int[]) message.obj);
+                clipStore.load((int[]) message.obj);
+                break;
+
+            case MSG_TAP_TRACE:
+                nextTrace = (TapLatency.Trace) message.obj;
+                break;
+
+            case MSG_PLAY:
+                finishRequest(SoundPlayback.EVENT_INTERRUPTED);
+
+                // The message is sent right away, so it is due at the time of the request
+                requestTime = message.getWhen();
+                currentTrace = takeNextTrace();
+
+                if (playSound(message.arg2, message.arg1)) {
+                    currentToken = message.arg1;
+                } else {
+                    requestTime = 0;
+                    currentTrace = null;
+                    sendRequestEnd(message.arg1, SoundPlayback.EVENT_ERROR);
+                }
+                break;
+
+            case MSG_PLAY_SEQUENCE:
+                finishRequest(SoundPlayback.EVENT_INTERRUPTED);
+
+                // The request is current while the sequence is rendered, so that it
+                // can still be interrupted before it starts playing
+                requestTime = message.getWhen();
+                currentTrace = takeNextTrace();
+                currentToken = message.arg1;
+
+                // A sequence that has been played before is already rendered
+                SoundSequence sequence = (SoundSequence) message.obj;
+                PcmClip rendered = pcmCache.getRendered(sequence.getKey());
+
+                if (rendered == null) {
+                    renderSequence(message.arg1, sequence);
+                } else if (!playClip(rendered, message.arg1)) {
+                    finishRequest(SoundPlayback.EVENT_ERROR);
+                }
+                break;
+
+            case MSG_SEQUENCE_RENDERED:
+                // Ignore sequences of requests that have been interrupted meanwhile
+                if (message.arg1 != currentToken) break;
+
+                if (message.obj == null || !playClip((PcmClip) message.obj, message.arg1)) {
+                    finishRequest(SoundPlayback.EVENT_ERROR);
+                }
+                break;
+
+            case MSG_PLAY_OVERLAY:
+                playOverlay(message.arg2, message.arg1);
+                break;
+
+            case MSG_PREFETCH:
+                pcmCache.prefetch(message.arg1);
+                break;
+
+            case MSG_PREFETCH_SEQUENCE:
+                renderSequenceAhead((SoundSequence) message.obj);
+                break;
+
+            case MSG_OVERLAY_DECODED:
+                // Ignore overlays that have been stopped meanwhile
+                if (overlays.indexOfKey(message.arg1) < 0) break;
+
+                if (message.obj == null) {
+                    finishOverlay(message.arg1, SoundPlayback.EVENT_ERROR);
+                } else {
+                    startOverlay((PcmClip) message.obj, message.arg1);
+                }
+                break;
+
+            case MSG_STOP:
+                finishRequest(SoundPlayback.EVENT_INTERRUPTED);
+                stopOverlays();
+                break;
+
+            case MSG_RELEASE:
+                finishRequest(SoundPlayback.EVENT_INTERRUPTED);
+                stopOverlays();
+                closeSession();
+                pauseMusic();
+                mediaPlayerPool.release();
+                pcmMixer.release();
+                break;
+
+            case MSG_START_SESSION:
+                openSession((String) message.obj, message.arg1 != 0);
+                break;
+
+            case MSG_END_SESSION:
+                finishRequest(SoundPlayback.EVENT_INTERRUPTED);
+                stopOverlays();
+                closeSession();
+                break;
+
+            case MSG_FOCUS_CHANGE:
+                handleAudioFocusChange(message.arg1);
+                break;
+
+            case MSG_SOUND_POOL_COMPLETION:
+                if (message.arg1 == currentToken) finishRequest(SoundPlayback.EVENT_COMPLETION);
+                break;
+
+            case MSG_START_MUSIC:
+                loadMusic(message.arg1);
+                break;
+
+            case MSG_MUSIC_DECODED:
+                // Ignore music that has been replaced meanwhile
+                if (message.arg1 != musicResourceId) break;
+
+                musicClip = (PcmClip) message.obj;
+
+                if (musicClip == null || !musicChannel.setClip(musicClip)) {
+                    if (BuildConfig.DEBUG) Log.d(TAG, "Background music could not be played");
+
+                    musicClip = null;
+                    musicResourceId = 0;
+                } else if (musicWanted) {
+                    playMusic();
+                }
+                break;
+
+            case MSG_STOP_MUSIC:
+                musicWanted = false;
+                pauseMusic();
+                break;
+
+            default:
+                return false;
+        }
+
+        // Any of the commands can start or end a sound, the music stays below them
+        musicChannel.setDucked(currentToken != 0 || overlays.size() > 0);
+        return true;
+    }
+
+    private void handleAudioFocusChange(int focusChange) {
+        if (focusChange == AudioManager.AUDIOFOCUS_LOSS_TRANSIENT ||
+                focusChange == AudioManager.AUDIOFOCUS_LOSS_TRANSIENT_CAN_DUCK) {
+            // The AUDIOFOCUS_LOSS_TRANSIENT case means that we've lost audio focus for a
+            // short amount of time. The AUDIOFOCUS_LOSS_TRANSIENT_CAN_DUCK case means that
+            // our app is allowed to continue playing sound but at a lower volume. We'll treat
+            // both cases the same way because our app is playing short sound files.
+
+            // Pause playback and reset player to the start of the file. That way, we can
+            // play the word from the beginning when we resume playback.
+            pcmMixer.pause();
+            mediaPlayerPool.pause();
+            soundPoolEngine.pause();
+            pauseSoundPoolCompletion();
+            musicChannel.pause();
+        } else if (focusChange == AudioManager.AUDIOFOCUS_LOSS) {
+            // The AUDIOFOCUS_LOSS case means we've lost audio focus
+            // Stop playback and clean up resources
+            finishRequest(SoundPlayback.EVENT_INTERRUPTED);
+            stopOverlays();
+
+            // The focus is gone, so the session no longer holds it. The next sound
+            // requests it again for itself.
+            releaseSessionFocus();
+
+            // The music waits for the next startMusic(), i.e. for the app to come back
+            pauseMusic();
+        } else if (focusChange == AudioManager.AUDIOFOCUS_GAIN) {
+            // The AUDIOFOCUS_GAIN case means we have regained focus and can resume playback.
+            pcmMixer.resume();
+            mediaPlayerPool.resume();
+            soundPoolEngine.resume();
+            resumeSoundPoolCompletion();
+
+            if (musicFocus) musicChannel.play();
+        }
+    }
+
+    /**
+     * The clip from the soundPoolEngine doesn't report its end, so its completion is
+     * held back while it is paused, together with the time that is left of it.
+     */
+    private void pauseSoundPoolCompletion() {
+        if (!playingFromSoundPool || soundPoolRemaining >= 0) return;
+
+        audioHandler.removeMessages(MSG_SOUND_POOL_COMPLETION);
+        soundPoolRemaining = Math.max(0, soundPoolEndTime - SystemClock.uptimeMillis());
+    }
+
+    /**
+     * Complete the clip from the soundPoolEngine once the time that was left of it when
+     * it was paused has passed.
+     */
+    private void resumeSoundPoolCompletion() {
+        if (!playingFromSoundPool || soundPoolRemaining < 0) return;
+
+        scheduleSoundPoolCompletion(currentToken, soundPoolRemaining);
+    }
+
+    private void scheduleSoundPoolCompletion(int token, long delay) {
+        soundPoolEndTime = SystemClock.uptimeMillis() + delay;
+        soundPoolRemaining = -1;
+
+        audioHandler.sendMessageDelayed(
+                audioHandler.obtainMessage(MSG_SOUND_POOL_COMPLETION, token, 0), delay);
+    }
+
+    private void openSession(String name, boolean warmUp) {
+        // A session that wasn't ended is replaced
+        closeSession();
+
+        sessionActive = true;
+        sessionName = name;
+        latencyCounter.reset();
+
+        // The session is the first holder of the focus, so the sounds of the session
+        // don't request and abandon it each time
+        sessionFocus = acquireFocus();
+
+        if (warmUp) {
+            outputKeepAlive.start(outputSampleRate);
+        }
+    }
+
+    private void closeSession() {
+        if (!sessionActive) return;
+
+        if (BuildConfig.DEBUG && latencyCounter.getCount() > 0) {
+            Log.d(TAG, "Request to playback latency of " + sessionName + ": " + latencyCounter);
+        }
+
+        releaseSessionFocus();
+        outputKeepAlive.stop();
+
+        sessionActive = false;
+        sessionName = null;
+    }
+
+    private void releaseSessionFocus() {
+        if (sessionFocus) {
+            sessionFocus = false;
+            releaseFocus();
+        }
+    }
+
+    /**
+     * Continue the music if its clip is already decoded, otherwise decode it in the
+     * background first. The decoded clip is resampled to the output rate and kept
+     * outside of the pcmCache, so that it is never evicted.
+     */
+    private void loadMusic(final int audioResourceId) {
+        musicWanted = true;
+
+        if (audioResourceId == musicResourceId) {
+            // The music is started once it is decoded
+            if (musicChannel.holds(musicClip)) playMusic();
+            return;
+        }
+
+        // Other music is released together with its decoded clip
+        pauseMusic();
+        musicChannel.release();
+        musicClip = null;
+
+        musicResourceId = audioResourceId;
+
+        sequenceExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                PcmClip clip = PcmResampler.resample(
+                        PcmDecoder.decode(context, audioResourceId, null), outputSampleRate);
+
+                audioHandler.obtainMessage(MSG_MUSIC_DECODED, audioResourceId, 0, clip).sendToTarget();
+            }
+        });
+    }
+
+    private void playMusic() {
+        if (!musicFocus) {
+            musicFocus = acquireFocus();
+            if (!musicFocus) return;
+        }
+
+        if (!musicChannel.play()) {
+            musicFocus = false;
+            releaseFocus();
+        }
+    }
+
+    /**
+     * Pause the music and let go of its hold on the audio focus. The track is kept.
+     */
+    private void pauseMusic() {
+        musicChannel.pause();
+
+        if (musicFocus) {
+            musicFocus = false;
+            releaseFocus();
+        }
+    }
+
+    private TapLatency.Trace takeNextTrace() {
+        TapLatency.Trace trace = nextTrace;
+        nextTrace = null;
+
+        return trace;
+    }
+
+    /**
+     * Count the time from the current request until now, when its playback has started,
+     * and the time from the tap that triggered it, if any.
+     */
+    private void recordLatency() {
+        if (requestTime == 0) return;
+
+        long startTime = SystemClock.uptimeMillis();
+        latencyCounter.record(startTime - requestTime);
+
+        if (currentTrace != null) {
+            TapLatency.record(currentTrace, requestTime, startTime);
+            currentTrace = null;
+        }
+
+        requestTime = 0;
+    }
+
+    /**
+     * Stop the current request, report its end and let go of the audio focus.
+     *
+     * @param event - the reason why the request has ended.
+     */
+    private void finishRequest(int event) {
+        int token = currentToken;
+
+        if (token != 0) {
+            sendRequestEnd(token, event);
+            currentToken = 0;
+        }
+
+        requestTime = 0;
+        currentTrace = null;
+
+        // Stop the voice of the pcmMixer, the track is kept for a replay of the clip
+        if (playingFromPcmCache) {
+            pcmMixer.stop(token);
+            playingFromPcmCache = false;
+
+            releaseFocus();
+        }
+
+        // Stop the clip from the soundPoolEngine, the decoded samples are kept
+        if (playingFromSoundPool) {
+            audioHandler.removeMessages(MSG_SOUND_POOL_COMPLETION);
+            soundPoolEngine.stop();
+            playingFromSoundPool = false;
+            soundPoolRemaining = -1;
+
+            releaseFocus();
+        }
+
+        // Stop the clip from the mediaPlayerPool and send its player back to the idle
+        // state. The player itself is kept, so that it can be bound to the next clip.
+        if (playingFromMediaPlayer) {
+            mediaPlayerPool.stop();
+            playingFromMediaPlayer = false;
+
+            releaseFocus();
+        }
+    }
+
+    /**
+     * Play the overlay right away if it is decoded, otherwise decode it in the background first.
+     */
+    private void playOverlay(final int audioResourceId, final int token) {
+        overlays.put(token, false);
+
+        PcmClip clip = pcmCache.get(audioResourceId);
+
+        if (clip != null) {
+            startOverlay(clip, token);
+            return;
+        }
+
+        sequenceExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                PcmClip decoded = pcmCache.getOrDecode(audioResourceId);
+
+                audioHandler.obtainMessage(MSG_OVERLAY_DECODED, token, 0, decoded).sendToTarget();
+            }
+        });
+    }
+
+    private void startOverlay(PcmClip clip, int token) {
+        if (!acquireFocus()) {
+            finishOverlay(token, SoundPlayback.EVENT_ERROR);
+            return;
+        }
+
+        if (!pcmMixer.play(clip, token, PcmMixer.PRIORITY_EFFECT, OVERLAY_GAIN)) {
+            releaseFocus();
+            finishOverlay(token, SoundPlayback.EVENT_ERROR);
+            return;
+        }
+
+        overlays.put(token, true);
+    }
+
+    /**
+     * Stop the given overlay, report its end and let go of its hold on the audio focus.
+     */
+    private void finishOverlay(int token, int event) {
+        int index = overlays.indexOfKey(token);
+        if (index < 0) return;
+
+        boolean playing = overlays.valueAt(index);
+        overlays.removeAt(index);
+
+        if (playing) {
+            pcmMixer.stop(token);
+            releaseFocus();
+        }
+
+        sendRequestEnd(token, event);
+    }
+
+    private void stopOverlays() {
+        for (int i = overlays.size() - 1; i >= 0; i--) {
+            finishOverlay(overlays.keyAt(i), SoundPlayback.EVENT_INTERRUPTED);
+        }
+    }
+
+    /**
+     * Request the audio focus for a sound that is about to play. The app plays short
+     * audio files, so we request audio focus for a short amount of time with
+     * AUDIOFOCUS_GAIN_TRANSIENT. It is only requested for the first of the sounds.
+     *
+     * @return true if the sound may be played, in that case releaseFocus() is to be
+     *         called once it has ended.
+     */
+    private boolean acquireFocus() {
+        if (focusHolders == 0) {
+            int result = audioManager.requestAudioFocus(audioFocusChangeListener,
+                    AudioManager.STREAM_MUSIC, AudioManager.AUDIOFOCUS_GAIN_TRANSIENT);
+
+            if (result != AudioManager.AUDIOFOCUS_REQUEST_GRANTED) return false;
+        }
+
+        focusHolders++;
+        return true;
+    }
+
+    /**
+     * Abandon the audio focus once the last sound has ended. This also unregisters
+     * the AudioFocusChangeListener so we don't get anymore callbacks.
+     */
+    private void releaseFocus() {
+        if (focusHolders == 0) return;
+
+        focusHolders--;
+
+        if (focusHolders == 0) {
+            audioManager.abandonAudioFocus(audioFocusChangeListener);
+        }
+    }
+
+    /**
+     * Render the sequence in the background, keep it in the pcmCache and hand it back
+     * to the audio thread.
+     */
+    private void renderSequence(final int token, final SoundSequence sequence) {
+        sequenceExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                PcmClip clip = PcmSequencer.render(pcmCache, sequence);
+
+                if (clip != null) {
+                    pcmCache.putRendered(sequence.getKey(), clip);
+                }
+
+                audioHandler.obtainMessage(MSG_SEQUENCE_RENDERED, token, 0, clip).sendToTarget();
+            }
+        });
+    }
+
+    /**
+     * Render the sequence in the background and keep it in the pcmCache, so that it
+     * starts right away once it is played. Nothing is done if it is already rendered.
+     */
+    private void renderSequenceAhead(final SoundSequence sequence) {
+        if (pcmCache.getRendered(sequence.getKey()) != null) return;
+
+        sequenceExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                PcmClip clip = PcmSequencer.render(pcmCache, sequence);
+
+                if (clip != null) {
+                    pcmCache.putRendered(sequence.getKey(), clip);
+                }
+            }
+        });
+    }
+
+    /**
+     * Request audiofocus and play the given decoded clip.
+     *
+     * @return true if playback was started.
+     */
+    private boolean playClip(PcmClip clip, int token) {
+        if (!acquireFocus()) return false;
+
+        if (!pcmMixer.play(clip, token, PcmMixer.PRIORITY_WORD, WORD_GAIN)) {
+            releaseFocus();
+            return false;
+        }
+
+        playingFromPcmCache = true;
+        recordLatency();
+        return true;
+    }
+
+    private void sendRequestEnd(int token, int event) {
+        mainHandler.obtainMessage(0, token, event).sendToTarget();
+    }
+
+    /**
+     * Request audiofocus and initiate playback of the given sound.
+     *
+     * @param audioResourceId - resource to be played.
+     * @param token - of the request, used to recognize the end of the clip.
+     * @return true if playback was started.
+     */
+    private boolean playSound(int audioResourceId, int token) {
+        // Request audio focus in order to play the audio file
+        if (acquireFocus()) {
+
+            // Clips that have been played before are already decoded in the cache
+            PcmClip clip = pcmCache.get(audioResourceId);
+
+            if (clip != null && pcmMixer.play(clip, token, PcmMixer.PRIORITY_WORD, WORD_GAIN)) {
+                playingFromPcmCache = true;
+                recordLatency();
+                return true;
+            }
+
+            // Decode the clip in the background, so that it is in the cache next time
+            pcmCache.prefetch(audioResourceId);
+
+            // The end of a clip from the pool is only known from its duration in the AudioIndex
+            int duration = AudioIndex.getDuration(audioResourceId);
+
+            // Short clips that are already decoded start right away from the pool
+            if (duration > 0 && soundPoolEngine.isReady(audioResourceId) && soundPoolEngine.play(audioResourceId)) {
+                playingFromSoundPool = true;
+                recordLatency();
+
+                // Finish the request and let go of the audio focus once the clip has finished
+                scheduleSoundPoolCompletion(token, duration);
+                return true;
+            }
+
+            // Bind the clip to a pooled player, it is started as soon as it is prepared
+            // and its latency is recorded then. The player reports its own completion,
+            // so clips without a known duration are always played from here.
+            if (!mediaPlayerPool.play(context, audioResourceId, token)) {
+                releaseFocus();
+                return false;
+            }
+
+            playingFromMediaPlayer = true;
+
+            return true;
+        }
+
+        return false;
+    }
+}
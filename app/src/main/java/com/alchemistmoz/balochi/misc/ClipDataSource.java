@@ -0,0 +1,39 @@
+package com.alchemistmoz.balochi.misc;
+
+import android.annotation.TargetApi;
+import android.media.MediaDataSource;
+import android.os.Build;
+
+/**
+ * Hands the compressed bytes of a clip from the ClipStore to a MediaPlayer or a
+ * MediaExtractor, instead of a file descriptor into the APK.
+ */
+@TargetApi(Build.VERSION_CODES.M)
+final class ClipDataSource extends MediaDataSource {
+
+    private final byte[] data;
+
+    ClipDataSource(byte[] data) {
+        this.data = data;
+    }
+
+    @Override
+    public int readAt(long position, byte[] buffer, int offset, int size) {
+        if (position >= data.length) return -1;
+
+        int length = (int) Math.min(size, data.length - position);
+        System.arraycopy(data, (int) position, buffer, offset, length);
+
+        return length;
+    }
+
+    @Override
+    public long getSize() {
+        return data.length;
+    }
+
+    @Override
+    public void close() {
+        // The bytes stay in the ClipStore
+    }
+}
@@ -0,0 +1,175 @@
+package com.alchemistmoz.balochi.misc;
+
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.content.res.Resources;
+import android.os.Build;
+import android.util.SparseArray;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Keeps the compressed bytes of the clips of the current category in memory, so that
+ * the MediaPlayerPool and the PcmDecoder don't have to go back to the APK for each clip.
+ *
+ * The clips of a category are read in bulk when the category is entered, in the order
+ * in which they are stored in the APK, so that the storage sees one sequential read.
+ * They are handed to the players and the decoder with a ClipDataSource, which needs
+ * Marshmallow. Below that the store stays empty and the clips are played from their
+ * file descriptors as before.
+ *
+ * get() may be called from any thread, the clips of a category are swapped in as a
+ * whole once they have all been read.
+ */
+final class ClipStore {
+
+    private final Context context;
+
+    // Reads the clips off the thread that requested them
+    private final ExecutorService loadExecutor = Executors.newSingleThreadExecutor();
+
+    // Audio resource ID -> compressed bytes of the clip, replaced as a whole on each load
+    private volatile SparseArray<byte[]> clips = new SparseArray<>();
+
+    /**
+     * @param context of the application.
+     */
+    ClipStore(Context context) {
+        this.context = context;
+    }
+
+    /**
+     * @return true if the clips can be played from memory on this device.
+     */
+    static boolean isSupported() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.M;
+    }
+
+    /**
+     * Read the clips of the given category and the COMMON clips in the background.
+     * The clips of the previous category are dropped once the new ones are in.
+     *
+     * @param category - audio resource ID's of the category, e.g. SoundBank.FAMILY.
+     */
+    void load(final int[] category) {
+        if (!isSupported()) return;
+
+        loadExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                clips = read(category);
+            }
+        });
+    }
+
+    /**
+     * @return the compressed bytes of the clip, or null if it is not in the store.
+     */
+    byte[] get(int audioResourceId) {
+        return clips.get(audioResourceId);
+    }
+
+    private SparseArray<byte[]> read(int[] category) {
+        SparseArray<byte[]> current = clips;
+        SparseArray<byte[]> loaded = new SparseArray<>();
+        List<ClipLocation> locations = new ArrayList<>();
+        Resources resources = context.getResources();
+
+        for (int[] group : new int[][]{SoundBank.COMMON, category}) {
+            for (int audioResourceId : group) {
+                if (loaded.indexOfKey(audioResourceId) >= 0) continue;
+
+                // The COMMON clips are already in memory from the previous category
+                byte[] data = current.get(audioResourceId);
+
+                if (data != null) {
+                    loaded.put(audioResourceId, data);
+                    continue;
+                }
+
+                // Only clips that are stored uncompressed in the APK have a file descriptor
+                AssetFileDescriptor descriptor = resources.openRawResourceFd(audioResourceId);
+
+                if (descriptor != null) {
+                    loaded.put(audioResourceId, null);
+                    locations.add(new ClipLocation(audioResourceId, descriptor));
+                }
+            }
+        }
+
+        // Read the clips in the order of their position in the APK
+        Collections.sort(locations, new Comparator<ClipLocation>() {
+            @Override
+            public int compare(ClipLocation first, ClipLocation second) {
+                return Long.compare(first.descriptor.getStartOffset(), second.descriptor.getStartOffset());
+            }
+        });
+
+        for (ClipLocation location : locations) {
+            byte[] data = readFully(location.descriptor);
+
+            if (data != null) {
+                loaded.put(location.audioResourceId, data);
+            } else {
+                loaded.remove(location.audioResourceId);
+            }
+        }
+
+        return loaded;
+    }
+
+    /**
+     * @return the bytes of the clip, or null if it could not be read.
+     */
+    private static byte[] readFully(AssetFileDescriptor descriptor) {
+        byte[] data = new byte[(int) descriptor.getLength()];
+        FileInputStream input = null;
+
+        try {
+            // The stream starts at the clip and closes the descriptor along with it
+            input = descriptor.createInputStream();
+
+            int offset = 0;
+            while (offset < data.length) {
+                int count = input.read(data, offset, data.length - offset);
+                if (count < 0) return null;
+
+                offset += count;
+            }
+            return data;
+        } catch (IOException e) {
+            return null;
+        } finally {
+            try {
+                if (input != null) {
+                    input.close();
+                } else {
+                    descriptor.close();
+                }
+            } catch (IOException e) {
+                // Nothing left to clean up
+            }
+        }
+    }
+
+    /**
+     * A clip that is to be read, and where it is stored.
+     */
+    private static final class ClipLocation {
+
+        final int audioResourceId;
+        final AssetFileDescriptor descriptor;
+
+        ClipLocation(int audioResourceId, AssetFileDescriptor descriptor) {
+            this.audioResourceId = audioResourceId;
+            this.descriptor = descriptor;
+        }
+    }
+}
@@ -27,9 +27,6 @@ public final class GameUtils {
     public final static int MEMORY = 2;
     public final static int AUDIOMATCH = 3;
 
-    // Allows for touch events to be temporarily disabled
-    private static boolean touchEnabled = true;
-
     /**
      * Prevent user from instantiating the class.
      */
@@ -38,17 +35,15 @@ public final class GameUtils {
     }
 
     /**
-     * @param enabled - Status of touch events.
-     */
-    public static void setTouchEnabled(boolean enabled) {
-        touchEnabled = enabled;
-    }
-
-    /**
-     * @return current status of touch events.
+     * In the press-to-play mode the sound of an item starts as soon as it is pressed,
+     * rather than once it is clicked. The game state only changes on the click.
+     * Turned on with the press_to_play bool resource.
+     *
+     * @param context of the activity.
+     * @return true if the games start the sounds on press.
      */
-    public static boolean isTouchEnabled() {
-        return touchEnabled;
+    public static boolean isPressToPlay(Context context) {
+        return context.getResources().getBoolean(R.bool.press_to_play);
     }
 
     /**
@@ -78,6 +73,44 @@ public final class GameUtils {
         return recyclerView;
     }
 
+    /**
+     * Starts the sound of a pressed item in the press-to-play mode, e.g. with pressItem()
+     * of the game.
+     */
+    private interface PressToPlay {
+
+        void play(int position);
+    }
+
+    /**
+     * In the press-to-play mode, play the sound of an item as soon as it is pressed and
+     * cancel it if the press doesn't end in a click.
+     *
+     * @param support - of the RecyclerView of the game.
+     * @param context of the activity.
+     * @param pressToPlay - starts the sound of the pressed item.
+     */
+    private static void addPressToPlay(ItemClickSupport support, Context context, final PressToPlay pressToPlay) {
+
+        if (!isPressToPlay(context)) return;
+
+        support.setOnItemPressListener(new ItemClickSupport.OnItemPressListener() {
+            @Override
+            public void onItemPressed(RecyclerView recyclerView, int position, View v) {
+
+                pressToPlay.play(position);
+
+            }
+
+            @Override
+            public void onItemPressCancelled(RecyclerView recyclerView, View v) {
+
+                SoundPlayback.cancelPreview();
+
+            }
+        });
+    }
+
     /**
      * Add ItemClickSupport for the count game items.
      *
@@ -86,7 +119,7 @@ public final class GameUtils {
      */
     public static void addCountItemClickSupport(RecyclerView recyclerView, final CountGame countGame) {
 
-        ItemClickSupport.addTo(recyclerView).setOnItemClickListener(new ItemClickSupport.OnItemClickListener() {
+        ItemClickSupport support = ItemClickSupport.addTo(recyclerView).setOnItemClickListener(new ItemClickSupport.OnItemClickListener() {
             @Override
             public void onItemClicked(RecyclerView recyclerView, int position, View v) {
 
@@ -94,6 +127,13 @@ public final class GameUtils {
 
             }
         });
+
+        addPressToPlay(support, recyclerView.getContext(), new PressToPlay() {
+            @Override
+            public void play(int position) {
+                countGame.pressItem(position);
+            }
+        });
     }
 
     /**
@@ -104,7 +144,7 @@ public final class GameUtils {
      */
     public static void addRepetitionItemClickSupport(RecyclerView recyclerView, final RepetitionGame repetitionGame) {
 
-        ItemClickSupport.addTo(recyclerView).setOnItemClickListener(new ItemClickSupport.OnItemClickListener() {
+        ItemClickSupport support = ItemClickSupport.addTo(recyclerView).setOnItemClickListener(new ItemClickSupport.OnItemClickListener() {
             @Override
             public void onItemClicked(RecyclerView recyclerView, int position, View v) {
 
@@ -112,18 +152,25 @@ public final class GameUtils {
 
             }
         });
+
+        addPressToPlay(support, recyclerView.getContext(), new PressToPlay() {
+            @Override
+            public void play(int position) {
+                repetitionGame.pressItem(position);
+            }
+        });
     }
 
     /**
      * Add ItemClickSupport for the memory cards in the game.
-     * Clicks are only registered if touchEnabled is true.
+     * Clicks are handed to the InputArbiter of the game.
      *
      * @param recyclerView of the MemoryActivity.
      * @param memoryGame instance of the game.
      */
     public static void addMemoryCardClickSupport(RecyclerView recyclerView, final MemoryGame memoryGame) {
 
-        ItemClickSupport.addTo(recyclerView).setOnItemClickListener(new ItemClickSupport.OnItemClickListener() {
+        ItemClickSupport support = ItemClickSupport.addTo(recyclerView).setOnItemClickListener(new ItemClickSupport.OnItemClickListener() {
             @Override
             public void onItemClicked(RecyclerView recyclerView, int position, View v) {
 
@@ -131,6 +178,13 @@ public final class GameUtils {
                 memoryGame.selectCard(position);
             }
         });
+
+        addPressToPlay(support, recyclerView.getContext(), new PressToPlay() {
+            @Override
+            public void play(int position) {
+                memoryGame.pressCard(position);
+            }
+        });
     }
 
     /**
@@ -141,7 +195,7 @@ public final class GameUtils {
      */
     public static void addAudioMatchItemClickSupport(RecyclerView recyclerView, final AudioMatchGame audioMatchGame) {
 
-        ItemClickSupport.addTo(recyclerView).setOnItemClickListener(new ItemClickSupport.OnItemClickListener() {
+        ItemClickSupport support = ItemClickSupport.addTo(recyclerView).setOnItemClickListener(new ItemClickSupport.OnItemClickListener() {
             @Override
             public void onItemClicked(RecyclerView recyclerView, int position, View v) {
 
@@ -149,14 +203,23 @@ public final class GameUtils {
 
             }
         });
+
+        addPressToPlay(support, recyclerView.getContext(), new PressToPlay() {
+            @Override
+            public void play(int position) {
+                audioMatchGame.pressItem(position);
+            }
+        });
     }
 
     /**
      * This animation is used for recyclerView items in from bottom to top.
      *
      * @param recyclerView - The recyclerView to apply animation to
+     * @param game - One of the game constants above
+     * @param inputArbiter - of the game, input is disabled during the animation of some games
      */
-    public static void runSlideUpAnim(RecyclerView recyclerView, final int game) {
+    public static void runSlideUpAnim(RecyclerView recyclerView, final int game, final InputArbiter inputArbiter) {
         int resId = R.anim.layout_animation_slide_up;
         LayoutAnimationController animation = AnimationUtils.loadLayoutAnimation(recyclerView.getContext(), resId);
 
@@ -165,9 +228,9 @@ public final class GameUtils {
             public void onAnimationStart(Animation animation) {
 
                 if (game == MEMORY) {
-                    setTouchEnabled(false);
+                    inputArbiter.setEnabled(false);
                 } else if (game == COUNT) {
-                    setTouchEnabled(false);
+                    inputArbiter.setEnabled(false);
                 }
             }
 
@@ -175,9 +238,9 @@ public final class GameUtils {
             public void onAnimationEnd(Animation animation) {
 
                 if (game == MEMORY) {
-                    setTouchEnabled(true);
+                    inputArbiter.setEnabled(true);
                 } else if (game == COUNT) {
-                    setTouchEnabled(true);
+                    inputArbiter.setEnabled(true);
                 }
             }
 
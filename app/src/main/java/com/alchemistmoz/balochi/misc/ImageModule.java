@@ -0,0 +1,202 @@
+package com.alchemistmoz.balochi.misc;
+
+import android.app.Activity;
+import android.app.Application;
+import android.content.Context;
+import android.os.Bundle;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import com.alchemistmoz.balochi.BuildConfig;
+import com.alchemistmoz.balochi.R;
+import com.bumptech.glide.GlideBuilder;
+import com.bumptech.glide.annotation.GlideModule;
+import com.bumptech.glide.load.DecodeFormat;
+import com.bumptech.glide.load.Key;
+import com.bumptech.glide.load.engine.DiskCacheStrategy;
+import com.bumptech.glide.load.engine.Resource;
+import com.bumptech.glide.load.engine.bitmap_recycle.LruBitmapPool;
+import com.bumptech.glide.load.engine.cache.InternalCacheDiskCacheFactory;
+import com.bumptech.glide.load.engine.cache.LruResourceCache;
+import com.bumptech.glide.module.AppGlideModule;
+import com.bumptech.glide.request.RequestOptions;
+
+import java.util.Locale;
+
+/**
+ * Configures Glide for the images of the app, which are all bundled drawables.
+ *
+ * The sizes of the memory cache and the bitmap pool depend on the RAM class of the
+ * device, see the image_memory_cache_kb_xxx and image_bitmap_pool_kb_xxx integer
+ * resources and Utilities.getRamClass(), the same classes as the PcmCache.
+ *
+ * RGB_565 is the default decode format on the low RAM and small devices. Glide only
+ * uses it for images without an alpha channel, the others stay ARGB_8888.
+ *
+ * The original images are already on the device, so only the images that have been
+ * decoded at the size of their cell are kept in the disk cache. Glide signs the
+ * resource ID's with the version of the app, so an update doesn't show stale images.
+ *
+ * The hits and misses of the memory cache and the bitmap pool are counted. A hit of
+ * the memory cache is an image that was released, e.g. by an activity that was closed,
+ * and shown again without being decoded. Images that are still shown by an activity
+ * in the back stack are reused before the memory cache is asked, and are not counted.
+ * The counts are logged in debug builds each time an activity is resumed.
+ */
+@GlideModule
+public final class ImageModule extends AppGlideModule {
+
+    private static final String DISK_CACHE_NAME = "image_cache";
+
+    private static final String TAG = "ImageModule";
+
+    // Set once Glide is initialized, null until then
+    private static CountingMemoryCache memoryCache;
+    private static LruBitmapPool bitmapPool;
+
+    @Override
+    public void applyOptions(@NonNull Context context, @NonNull GlideBuilder builder) {
+        boolean smallDevice = Utilities.getRamClass(context) <= Utilities.RAM_CLASS_SMALL;
+
+        memoryCache = new CountingMemoryCache(Utilities.getByteBudget(context, R.integer.image_memory_cache_kb_low_ram,
+                R.integer.image_memory_cache_kb_small, R.integer.image_memory_cache_kb_medium,
+                R.integer.image_memory_cache_kb_large));
+
+        bitmapPool = new LruBitmapPool(Utilities.getByteBudget(context, R.integer.image_bitmap_pool_kb_low_ram,
+                R.integer.image_bitmap_pool_kb_small, R.integer.image_bitmap_pool_kb_medium,
+                R.integer.image_bitmap_pool_kb_large));
+
+        int diskCacheBytes = context.getResources().getInteger(R.integer.image_disk_cache_kb) * 1024;
+
+        builder.setMemoryCache(memoryCache)
+                .setBitmapPool(bitmapPool)
+                .setDiskCache(new InternalCacheDiskCacheFactory(context, DISK_CACHE_NAME, diskCacheBytes))
+                .setDefaultRequestOptions(new RequestOptions()
+                        .format(smallDevice ? DecodeFormat.PREFER_RGB_565 : DecodeFormat.PREFER_ARGB_8888)
+                        .diskCacheStrategy(DiskCacheStrategy.RESOURCE));
+
+        if (BuildConfig.DEBUG) {
+            ((Application) context.getApplicationContext()).registerActivityLifecycleCallbacks(logCallbacks);
+        }
+    }
+
+    /**
+     * There are no libraries with modules of their own, so the manifest isn't searched for them.
+     */
+    @Override
+    public boolean isManifestParsingEnabled() {
+        return false;
+    }
+
+    /**
+     * @return number of images that were found in the memory cache.
+     */
+    public static long getMemoryCacheHitCount() {
+        return memoryCache != null ? memoryCache.hitCount : 0;
+    }
+
+    /**
+     * @return number of images that were not in the memory cache and had to be decoded.
+     */
+    public static long getMemoryCacheMissCount() {
+        return memoryCache != null ? memoryCache.missCount : 0;
+    }
+
+    /**
+     * @return number of bitmaps that were reused from the bitmap pool.
+     */
+    public static long getBitmapPoolHitCount() {
+        return bitmapPool != null ? bitmapPool.hitCount() : 0;
+    }
+
+    /**
+     * @return number of bitmaps that had to be allocated.
+     */
+    public static long getBitmapPoolMissCount() {
+        return bitmapPool != null ? bitmapPool.missCount() : 0;
+    }
+
+    /**
+     * @return the counts of the memory cache and the bitmap pool, e.g. for the log.
+     */
+    public static String getStats() {
+        if (memoryCache == null) return "Glide is not initialized";
+
+        return String.format(Locale.US, "memory cache %d hits, %d misses, %d of %d KB; " +
+                        "bitmap pool %d hits, %d misses, %d of %d KB",
+                getMemoryCacheHitCount(), getMemoryCacheMissCount(),
+                memoryCache.getCurrentSize() / 1024, memoryCache.getMaxSize() / 1024,
+                getBitmapPoolHitCount(), getBitmapPoolMissCount(),
+                bitmapPool.getCurrentSize() / 1024, bitmapPool.getMaxSize() / 1024);
+    }
+
+    /**
+     * Memory cache that counts how often an image was found in it. Glide takes an image
+     * out of the cache with remove() when it is requested again.
+     */
+    private static final class CountingMemoryCache extends LruResourceCache {
+
+        // Only read for the counts, a stale value is good enough
+        private volatile long hitCount;
+        private volatile long missCount;
+
+        CountingMemoryCache(long size) {
+            super(size);
+        }
+
+        @Nullable
+        @Override
+        public synchronized Resource<?> remove(@NonNull Key key) {
+            Resource<?> resource = super.remove(key);
+
+            if (resource != null) {
+                hitCount++;
+            } else {
+                missCount++;
+            }
+            return resource;
+        }
+    }
+
+    /**
+     * Logs the counts in debug builds, so it can be seen whether the images of a menu
+     * survived the navigation to another activity and back.
+     */
+    private static final Application.ActivityLifecycleCallbacks logCallbacks = new Application.ActivityLifecycleCallbacks() {
+        @Override
+        public void onActivityResumed(Activity activity) {
+            Log.d(TAG, activity.getClass().getSimpleName() + " resumed, " + getStats());
+        }
+
+        @Override
+        public void onActivityCreated(Activity activity, Bundle savedInstanceState) {
+            // Empty
+        }
+
+        @Override
+        public void onActivityStarted(Activity activity) {
+            // Empty
+        }
+
+        @Override
+        public void onActivityPaused(Activity activity) {
+            // Empty
+        }
+
+        @Override
+        public void onActivityStopped(Activity activity) {
+            // Empty
+        }
+
+        @Override
+        public void onActivitySaveInstanceState(Activity activity, Bundle outState) {
+            // Empty
+        }
+
+        @Override
+        public void onActivityDestroyed(Activity activity) {
+            // Empty
+        }
+    };
+}
@@ -0,0 +1,339 @@
+package com.alchemistmoz.balochi.misc;
+
+import android.app.Activity;
+import android.app.Application;
+import android.content.Context;
+import android.content.ContextWrapper;
+import android.os.Bundle;
+import android.os.Handler;
+import android.util.Log;
+
+import com.alchemistmoz.balochi.BuildConfig;
+import com.alchemistmoz.balochi.R;
+
+import java.util.ArrayDeque;
+import java.util.Locale;
+import java.util.concurrent.Executor;
+
+/**
+ * Decides what happens to the taps of a game while it is busy, e.g. while the sound
+ * of the previous tap is playing. Each game has its own arbiter.
+ *
+ * The policies are:
+ * - POLICY_DROP: taps are ignored while the game is busy.
+ * - POLICY_QUEUE: taps are kept, up to the max queue depth, and handled one after
+ *   the other once the game is no longer busy. Any further taps are ignored.
+ * - POLICY_INTERRUPT: the sound that the game is waiting on is cut short, the game
+ *   moves on as if the sound had ended and the tap is handled right away. Taps are
+ *   ignored while the game is busy with anything other than a sound, e.g. an animation.
+ *
+ * The policy of the games is set with the input_policy integer resource.
+ *
+ * The arbiter is scoped to the activity of the game. The kept taps are forgotten when
+ * the activity is paused, and once it is destroyed the arbiter is closed: all taps are
+ * ignored and a late step of the game, e.g. a delayed post, can't enable it again.
+ *
+ * The taps that were handled and those that were ignored are counted, and logged in
+ * debug builds when the activity is destroyed.
+ *
+ * Use as follows:
+ * - Create one InputArbiter per game, with the PlaybackWaiter of the game.
+ *
+ * - Hand each tap to submit(runnable), the runnable does what the game does with the tap.
+ *
+ * - setEnabled(false) while the game is busy and setEnabled(true) once it is done.
+ *
+ * - clearQueue() when a new round is started, the taps that are kept were meant
+ *   for the items of the old round.
+ */
+public final class InputArbiter {
+
+    // The policies for taps while the game is busy
+    public static final int POLICY_DROP = 0;
+    public static final int POLICY_QUEUE = 1;
+    public static final int POLICY_INTERRUPT = 2;
+
+    private static final String TAG = "InputArbiter";
+
+    private final int policy;
+
+    private final int maxQueueDepth;
+
+    // The waiter of the game, its sound is the one that is interrupted
+    private final PlaybackWaiter playbackWaiter;
+
+    // Taps that are kept while the game is busy
+    private final ArrayDeque<Runnable> queue = new ArrayDeque<>();
+
+    // To be used for handling the kept taps after the current step of the game
+    private final Executor executor;
+
+    private boolean enabled = true;
+
+    // True once the activity of the game has been destroyed
+    private boolean closed;
+
+    // Incremented by clearQueue(), so that a tap isn't handled in a round it wasn't meant for
+    private int round;
+
+    // The activity the arbiter is scoped to, null if none
+    private Activity activity;
+
+    // Number of taps that were handled, and of those the ones that were kept or interrupted a sound
+    private int acceptedCount;
+    private int queuedCount;
+    private int interruptCount;
+
+    // Number of taps that were ignored, including kept taps that were forgotten
+    private int droppedCount;
+
+    // Handles the kept taps, until one of them makes the game busy again. It may run
+    // after the queue was cleared, there is nothing left to handle then
+    private final Runnable drainRunnable = new Runnable() {
+        @Override
+        public void run() {
+            while (enabled && !closed && !queue.isEmpty()) {
+                acceptedCount++;
+                queuedCount++;
+                queue.poll().run();
+            }
+        }
+    };
+
+    /**
+     * Forgets the kept taps when the activity is paused and closes the arbiter
+     * once it is destroyed.
+     */
+    private final Application.ActivityLifecycleCallbacks lifecycleCallbacks = new Application.ActivityLifecycleCallbacks() {
+        @Override
+        public void onActivityPaused(Activity pausedActivity) {
+            // The taps are not to be handled once the user is back
+            if (pausedActivity == activity) clearQueue();
+        }
+
+        @Override
+        public void onActivityDestroyed(Activity destroyedActivity) {
+            if (destroyedActivity == activity) close();
+        }
+
+        @Override
+        public void onActivityCreated(Activity activity, Bundle savedInstanceState) {
+            // Empty
+        }
+
+        @Override
+        public void onActivityStarted(Activity activity) {
+            // Empty
+        }
+
+        @Override
+        public void onActivityResumed(Activity activity) {
+            // Empty
+        }
+
+        @Override
+        public void onActivityStopped(Activity activity) {
+            // Empty
+        }
+
+        @Override
+        public void onActivitySaveInstanceState(Activity activity, Bundle outState) {
+            // Empty
+        }
+    };
+
+    /**
+     * Arbiter with the policy and queue depth of the input_policy and input_queue_depth
+     * integer resources, scoped to the activity of the given context.
+     *
+     * @param context of the activity.
+     * @param playbackWaiter of the game.
+     */
+    public InputArbiter(Context context, PlaybackWaiter playbackWaiter) {
+        this(context, context.getResources().getInteger(R.integer.input_policy),
+                context.getResources().getInteger(R.integer.input_queue_depth), playbackWaiter);
+    }
+
+    /**
+     * @param context of the activity, the arbiter is scoped to the activity.
+     * @param policy - one of the POLICY_ constants.
+     * @param maxQueueDepth - number of taps that are kept with POLICY_QUEUE.
+     * @param playbackWaiter of the game, may be null if there is no sound to interrupt.
+     */
+    public InputArbiter(Context context, int policy, int maxQueueDepth, PlaybackWaiter playbackWaiter) {
+        this(context, policy, maxQueueDepth, playbackWaiter, new Executor() {
+            private final Handler handler = new Handler();
+
+            @Override
+            public void execute(Runnable command) {
+                handler.post(command);
+            }
+        });
+    }
+
+    /**
+     * @param context of the activity, the arbiter is scoped to the activity.
+     * @param policy - one of the POLICY_ constants.
+     * @param maxQueueDepth - number of taps that are kept with POLICY_QUEUE.
+     * @param playbackWaiter of the game, may be null if there is no sound to interrupt.
+     * @param executor - runs the kept taps after the current step of the game, on the
+     *                   thread of the game.
+     */
+    InputArbiter(Context context, int policy, int maxQueueDepth, PlaybackWaiter playbackWaiter,
+                 Executor executor) {
+        this.policy = policy;
+        this.maxQueueDepth = maxQueueDepth;
+        this.playbackWaiter = playbackWaiter;
+        this.executor = executor;
+
+        activity = findActivity(context);
+
+        if (activity != null) {
+            activity.getApplication().registerActivityLifecycleCallbacks(lifecycleCallbacks);
+        }
+    }
+
+    /**
+     * @param enabled - false while the game is busy, the kept taps are handled once it is true.
+     */
+    public void setEnabled(boolean enabled) {
+
+        // A late step of a game that has ended
+        if (closed) return;
+
+        this.enabled = enabled;
+
+        // The kept taps are handled once the current step of the game has finished
+        if (enabled && !queue.isEmpty()) {
+            executor.execute(drainRunnable);
+        }
+    }
+
+    /**
+     * @return true if a tap would be handled right away.
+     */
+    public boolean isEnabled() {
+        return enabled && !closed && queue.isEmpty();
+    }
+
+    /**
+     * Handle the tap according to the policy.
+     *
+     * @param input - what the game does with the tap.
+     * @return true if the tap was handled or kept, false if it was ignored.
+     */
+    public boolean submit(Runnable input) {
+
+        if (isEnabled()) {
+            acceptedCount++;
+            input.run();
+            return true;
+        }
+
+        if (!closed && policy == POLICY_QUEUE) {
+
+            if (queue.size() < maxQueueDepth) {
+                queue.add(input);
+                return true;
+            }
+
+        } else if (!closed && policy == POLICY_INTERRUPT) {
+
+            if (interrupt(input)) return true;
+        }
+
+        droppedCount++;
+        return false;
+    }
+
+    /**
+     * Cut short the sounds that the game is waiting on, until the game is no longer busy,
+     * then handle the tap.
+     *
+     * @param input - what the game does with the tap.
+     * @return true if the tap was handled.
+     */
+    private boolean interrupt(Runnable input) {
+        int tapRound = round;
+
+        // Each skipped sound runs the next step of the game, which may play another sound
+        while (!enabled && round == tapRound && playbackWaiter != null && playbackWaiter.isWaiting()) {
+            playbackWaiter.skip();
+        }
+
+        // The game is busy with something else, or has moved on to a new round
+        if (!enabled || closed || round != tapRound) return false;
+
+        acceptedCount++;
+        interruptCount++;
+        input.run();
+        return true;
+    }
+
+    /**
+     * Forget the kept taps, e.g. when a new round is started.
+     */
+    public void clearQueue() {
+        round += 1;
+        droppedCount += queue.size();
+        queue.clear();
+    }
+
+    /**
+     * Forget the kept taps and enable input again, e.g. when the activity is paused
+     * while the game is busy and the step that would enable it is cancelled.
+     */
+    public void reset() {
+        clearQueue();
+        setEnabled(true);
+    }
+
+    /**
+     * @return number of taps that were handled, right away, after being kept or by
+     *         interrupting a sound.
+     */
+    public int getAcceptedCount() {
+        return acceptedCount;
+    }
+
+    /**
+     * @return number of taps that were ignored.
+     */
+    public int getDroppedCount() {
+        return droppedCount;
+    }
+
+    /**
+     * Ignore all further taps and stop following the lifecycle of the activity.
+     */
+    private void close() {
+        clearQueue();
+        closed = true;
+
+        activity.getApplication().unregisterActivityLifecycleCallbacks(lifecycleCallbacks);
+
+        if (BuildConfig.DEBUG && acceptedCount + droppedCount > 0) {
+            Log.d(TAG, "Input of " + activity.getClass().getSimpleName() + ": " + this);
+        }
+
+        activity = null;
+    }
+
+    /**
+     * @return the activity that the context belongs to, or null if there is none.
+     */
+    private static Activity findActivity(Context context) {
+        while (context instanceof ContextWrapper) {
+            if (context instanceof Activity) return (Activity) context;
+
+            context = ((ContextWrapper) context).getBaseContext();
+        }
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "%d taps accepted (%d kept, %d interrupted a sound), %d dropped",
+                acceptedCount, queuedCount, interruptCount, droppedCount);
+    }
+}
@@ -1,55 +1,180 @@
 package com.alchemistmoz.balochi.misc;
 
+import android.os.Bundle;
+import android.support.v4.view.AccessibilityDelegateCompat;
+import android.support.v4.view.accessibility.AccessibilityNodeInfoCompat;
 import android.support.v7.widget.RecyclerView;
+import android.support.v7.widget.RecyclerViewAccessibilityDelegate;
+import android.view.HapticFeedbackConstants;
+import android.view.MotionEvent;
+import android.view.SoundEffectConstants;
 import android.view.View;
+import android.view.ViewConfiguration;
+import android.view.accessibility.AccessibilityEvent;
 
 import com.alchemistmoz.balochi.R;
 
+/**
+ * Click support for the items of a RecyclerView, through a single OnItemTouchListener
+ * on the RecyclerView rather than a listener on every child.
+ *
+ * The touched item is found by its coordinates among the laid out children. A tap is
+ * ignored while the adapter has updates that are not laid out yet, e.g. right after
+ * notifyDataSetChanged() for a new round, since the children still show the items of
+ * the previous round and the position would point at an item that was never seen.
+ *
+ * The state of a touch is kept in fields, so handling the events doesn't allocate.
+ *
+ * The children have no listeners of their own, so they are made clickable for TalkBack
+ * and switch access by the accessibility delegate of the RecyclerView instead. The
+ * RecyclerView sets its item delegate on each child that is bound while accessibility is
+ * on, and the ACTION_CLICK and ACTION_LONG_CLICK of that delegate go to the same
+ * listeners as the taps.
+ */
 public class ItemClickSupport {
     private final RecyclerView mRecyclerView;
     private OnItemClickListener mOnItemClickListener;
     private OnItemLongClickListener mOnItemLongClickListener;
-    private View.OnClickListener mOnClickListener = new View.OnClickListener() {
+    private OnItemPressListener mOnItemPressListener;
+
+    // Distance a touch can move before it is a scroll rather than a tap
+    private final int mTouchSlop;
+    private final int mLongPressTimeout;
+
+    // The child that is touched, null if none
+    private View mPressedView;
+    private float mDownX;
+    private float mDownY;
+    private boolean mLongClicked;
+
+    private final Runnable mLongPressRunnable = new Runnable() {
         @Override
-        public void onClick(View v) {
-            if (mOnItemClickListener != null) {
-                RecyclerView.ViewHolder holder = mRecyclerView.getChildViewHolder(v);
-                mOnItemClickListener.onItemClicked(mRecyclerView, holder.getAdapterPosition(), v);
+        public void run() {
+            if (mPressedView == null || mOnItemLongClickListener == null) return;
+
+            int position = getPosition(mPressedView);
+            if (position == RecyclerView.NO_POSITION) return;
+
+            mLongClicked = mOnItemLongClickListener.onItemLongClicked(mRecyclerView, position, mPressedView);
+
+            if (mLongClicked) {
+                mPressedView.performHapticFeedback(HapticFeedbackConstants.LONG_PRESS);
+                cancelPress(false);
             }
         }
     };
-    private View.OnLongClickListener mOnLongClickListener = new View.OnLongClickListener() {
+
+    private RecyclerView.OnItemTouchListener mItemTouchListener = new RecyclerView.OnItemTouchListener() {
         @Override
-        public boolean onLongClick(View v) {
-            if (mOnItemLongClickListener != null) {
-                RecyclerView.ViewHolder holder = mRecyclerView.getChildViewHolder(v);
-                return mOnItemLongClickListener.onItemLongClicked(mRecyclerView, holder.getAdapterPosition(), v);
+        public boolean onInterceptTouchEvent(RecyclerView recyclerView, MotionEvent event) {
+            switch (event.getActionMasked()) {
+                case MotionEvent.ACTION_DOWN:
+                    onDown(event);
+                    break;
+
+                case MotionEvent.ACTION_MOVE:
+                    // The touch has turned into a scroll
+                    if (mPressedView != null && (Math.abs(event.getX() - mDownX) > mTouchSlop ||
+                            Math.abs(event.getY() - mDownY) > mTouchSlop)) {
+                        cancelPress(true);
+                    }
+                    break;
+
+                case MotionEvent.ACTION_UP:
+                    onUp(event);
+                    break;
+
+                case MotionEvent.ACTION_CANCEL:
+                case MotionEvent.ACTION_POINTER_DOWN:
+                    cancelPress(true);
+                    break;
             }
+
+            // The events are only observed, the RecyclerView still scrolls
             return false;
         }
+
+        @Override
+        public void onTouchEvent(RecyclerView recyclerView, MotionEvent event) {
+            // Empty, events are never intercepted
+        }
+
+        @Override
+        public void onRequestDisallowInterceptTouchEvent(boolean disallowIntercept) {
+            if (disallowIntercept) cancelPress(true);
+        }
     };
-    private RecyclerView.OnChildAttachStateChangeListener mAttachListener
-            = new RecyclerView.OnChildAttachStateChangeListener() {
+
+    /**
+     * Hands the item delegate below to the RecyclerView, which sets it on the children.
+     */
+    private final class ListAccessibilityDelegate extends RecyclerViewAccessibilityDelegate {
+        private final AccessibilityDelegateCompat mItemDelegate = new ItemAccessibilityDelegate(this);
+
+        ListAccessibilityDelegate(RecyclerView recyclerView) {
+            super(recyclerView);
+        }
+
+        @Override
+        public AccessibilityDelegateCompat getItemDelegate() {
+            return mItemDelegate;
+        }
+    }
+
+    /**
+     * Offers the click and the long click of an item to the accessibility services and
+     * performs them like a tap would.
+     */
+    private final class ItemAccessibilityDelegate extends RecyclerViewAccessibilityDelegate.ItemDelegate {
+
+        ItemAccessibilityDelegate(RecyclerViewAccessibilityDelegate recyclerViewDelegate) {
+            super(recyclerViewDelegate);
+        }
+
         @Override
-        public void onChildViewAttachedToWindow(View view) {
+        public void onInitializeAccessibilityNodeInfo(View host, AccessibilityNodeInfoCompat info) {
+            super.onInitializeAccessibilityNodeInfo(host, info);
+
             if (mOnItemClickListener != null) {
-                view.setOnClickListener(mOnClickListener);
+                info.setClickable(true);
+                info.addAction(AccessibilityNodeInfoCompat.ACTION_CLICK);
             }
+
             if (mOnItemLongClickListener != null) {
-                view.setOnLongClickListener(mOnLongClickListener);
+                info.setLongClickable(true);
+                info.addAction(AccessibilityNodeInfoCompat.ACTION_LONG_CLICK);
             }
         }
 
         @Override
-        public void onChildViewDetachedFromWindow(View view) {
+        public boolean performAccessibilityAction(View host, int action, Bundle args) {
+            int position = getPosition(host);
+
+            if (position != RecyclerView.NO_POSITION) {
+                if (action == AccessibilityNodeInfoCompat.ACTION_CLICK && mOnItemClickListener != null) {
+                    TapLatency.markTap();
+                    performItemClick(host, position);
+                    return true;
+                }
 
+                if (action == AccessibilityNodeInfoCompat.ACTION_LONG_CLICK && mOnItemLongClickListener != null) {
+                    return mOnItemLongClickListener.onItemLongClicked(mRecyclerView, position, host);
+                }
+            }
+
+            return super.performAccessibilityAction(host, action, args);
         }
-    };
+    }
 
     private ItemClickSupport(RecyclerView recyclerView) {
         mRecyclerView = recyclerView;
         mRecyclerView.setTag(R.id.item_click_support, this);
-        mRecyclerView.addOnChildAttachStateChangeListener(mAttachListener);
+        mRecyclerView.addOnItemTouchListener(mItemTouchListener);
+        mRecyclerView.setAccessibilityDelegateCompat(new ListAccessibilityDelegate(recyclerView));
+
+        ViewConfiguration configuration = ViewConfiguration.get(recyclerView.getContext());
+        mTouchSlop = configuration.getScaledTouchSlop();
+        mLongPressTimeout = ViewConfiguration.getLongPressTimeout();
     }
 
     public static ItemClickSupport addTo(RecyclerView view) {
@@ -78,8 +203,110 @@ public class ItemClickSupport {
         return this;
     }
 
+    /**
+     * Get notified as soon as an item is pressed, before the click. The press is either
+     * followed by the click of the item or cancelled.
+     */
+    public ItemClickSupport setOnItemPressListener(OnItemPressListener listener) {
+        mOnItemPressListener = listener;
+        return this;
+    }
+
+    private void onDown(MotionEvent event) {
+        cancelPress(true);
+
+        View child = mRecyclerView.findChildViewUnder(event.getX(), event.getY());
+        if (child == null || getPosition(child) == RecyclerView.NO_POSITION) return;
+
+        mPressedView = child;
+        mDownX = event.getX();
+        mDownY = event.getY();
+        mLongClicked = false;
+
+        child.setPressed(true);
+
+        if (mOnItemLongClickListener != null) {
+            mRecyclerView.postDelayed(mLongPressRunnable, mLongPressTimeout);
+        }
+
+        if (mOnItemPressListener != null) {
+            TapLatency.markTap(event.getEventTime());
+            mOnItemPressListener.onItemPressed(mRecyclerView, getPosition(child), child);
+        }
+    }
+
+    private void onUp(MotionEvent event) {
+        View child = mPressedView;
+        if (child == null) return;
+
+        // Released over another item or outside of the list, or the adapter changed since
+        // the press and the item under the finger is not known, so there is no click
+        int position = getPosition(child);
+        if (mRecyclerView.findChildViewUnder(event.getX(), event.getY()) != child ||
+                position == RecyclerView.NO_POSITION) {
+            cancelPress(true);
+            return;
+        }
+
+        mRecyclerView.removeCallbacks(mLongPressRunnable);
+        child.setPressed(false);
+        mPressedView = null;
+
+        if (mLongClicked || mOnItemClickListener == null) return;
+
+        // The finger was lifted at the time of the event
+        TapLatency.markTap(event.getEventTime());
+
+        performItemClick(child, position);
+    }
+
+    /**
+     * Click the item with the same feedback as View.performClick().
+     */
+    private void performItemClick(View child, int position) {
+        child.playSoundEffect(SoundEffectConstants.CLICK);
+        child.sendAccessibilityEvent(AccessibilityEvent.TYPE_VIEW_CLICKED);
+
+        mOnItemClickListener.onItemClicked(mRecyclerView, position, child);
+    }
+
+    /**
+     * Forget about the touched item, if any.
+     *
+     * @param notify - whether the OnItemPressListener is to be told that the press was cancelled.
+     */
+    private void cancelPress(boolean notify) {
+        View child = mPressedView;
+        if (child == null) return;
+
+        mRecyclerView.removeCallbacks(mLongPressRunnable);
+        child.setPressed(false);
+        mPressedView = null;
+
+        if (notify && mOnItemPressListener != null) {
+            mOnItemPressListener.onItemPressCancelled(mRecyclerView, child);
+        }
+    }
+
+    /**
+     * @return adapter position of the child, or NO_POSITION while the adapter has
+     *         updates that are not laid out yet.
+     */
+    private int getPosition(View child) {
+        RecyclerView.ViewHolder holder = mRecyclerView.getChildViewHolder(child);
+        RecyclerView.Adapter adapter = mRecyclerView.getAdapter();
+        if (holder == null || adapter == null) return RecyclerView.NO_POSITION;
+
+        if (mRecyclerView.hasPendingAdapterUpdates()) return RecyclerView.NO_POSITION;
+
+        int position = holder.getAdapterPosition();
+        return position < adapter.getItemCount() ? position : RecyclerView.NO_POSITION;
+    }
+
     private void detach(RecyclerView view) {
-        view.removeOnChildAttachStateChangeListener(mAttachListener);
+        cancelPress(true);
+        view.removeOnItemTouchListener(mItemTouchListener);
+        view.setAccessibilityDelegateCompat(new RecyclerViewAccessibilityDelegate(view));
         view.setTag(R.id.item_click_support, null);
     }
 
@@ -92,4 +319,12 @@ public class ItemClickSupport {
 
         boolean onItemLongClicked(RecyclerView recyclerView, int position, View v);
     }
+
+    public interface OnItemPressListener {
+
+        void onItemPressed(RecyclerView recyclerView, int position, View v);
+
+        /** The item was released without a click, e.g. the finger moved off or the list scrolled. */
+        void onItemPressCancelled(RecyclerView recyclerView, View v);
+    }
 }
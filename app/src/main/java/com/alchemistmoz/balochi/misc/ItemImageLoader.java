@@ -0,0 +1,281 @@
+package com.alchemistmoz.balochi.misc;
+
+import android.app.Activity;
+import android.app.Application;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
+import android.os.Bundle;
+import android.os.SystemClock;
+import android.support.annotation.Nullable;
+import android.util.Log;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.FrameLayout;
+import android.widget.ImageView;
+
+import com.alchemistmoz.balochi.BuildConfig;
+import com.alchemistmoz.balochi.R;
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.RequestManager;
+import com.bumptech.glide.load.DataSource;
+import com.bumptech.glide.load.engine.GlideException;
+import com.bumptech.glide.request.RequestListener;
+import com.bumptech.glide.request.RequestOptions;
+import com.bumptech.glide.request.target.Target;
+
+import java.util.Locale;
+
+/**
+ * Loads the images of the items of a list at the size of their cells.
+ *
+ * The cells have a fixed size, set by the dimens of the item layout for the screen
+ * width (values-sw*dp). The size is resolved once, when the loader is created, so each
+ * image is decoded right away at exactly that size, instead of Glide waiting for the
+ * view to be laid out before it knows how far it can downsample the full density art.
+ *
+ * The images are requested with the same options whether they are loaded into a view
+ * or preloaded, so a preloaded image is found in the memory cache when it is bound.
+ *
+ * The decode format and the caches are set for all images by the ImageModule.
+ *
+ * With the resource_bitmap_cache bool resource the images are loaded by the
+ * ResourceBitmapCache instead of Glide, at the same size. The decodes are counted
+ * the same way for both, and logged in debug builds once the activity is destroyed.
+ *
+ * Use as follows:
+ * - Create one ItemImageLoader per adapter, with the layout of its items.
+ *
+ * - Call load(imageResourceID, imageView) in onBindViewHolder().
+ *
+ * - Images that are about to be shown can be decoded ahead with preload(imageResourceID).
+ */
+public final class ItemImageLoader {
+
+    private static final String TAG = "ItemImageLoader";
+
+    // Null if the images are loaded by the ResourceBitmapCache
+    private RequestManager requestManager;
+    private RequestOptions options;
+
+    // Null if the images are loaded by Glide
+    private ResourceBitmapCache bitmapCache;
+    private ResourceBitmapCache.SizeClass sizeClass;
+
+    // Size of the images in pixels, the cell without its padding
+    private final int width;
+    private final int height;
+
+    // Name of the item layout, used in the log
+    private final String layoutName;
+
+    // Number of binds whose image was decoded, and of those found in the memory cache
+    private int decodeCount;
+    private int memoryCacheCount;
+
+    // Bytes of all the decoded images
+    private long decodedBytes;
+
+    // Time from the bind until the decoded image was ready
+    private final LatencyCounter decodeTimes = new LatencyCounter();
+
+    /**
+     * @param context of the activity, the loads follow its lifecycle.
+     * @param itemLayout - layout resource of the items, its size has to be set by dimens.
+     */
+    public ItemImageLoader(Context context, int itemLayout) {
+        layoutName = context.getResources().getResourceEntryName(itemLayout);
+
+        // Inflate a single item to resolve its size for the current screen
+        FrameLayout root = new FrameLayout(context);
+        View item = LayoutInflater.from(context).inflate(itemLayout, root, false);
+        ViewGroup.LayoutParams params = item.getLayoutParams();
+
+        width = params.width - item.getPaddingLeft() - item.getPaddingRight();
+        height = params.height - item.getPaddingTop() - item.getPaddingBottom();
+
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("The size of " + layoutName + " is not set by dimens");
+        }
+
+        if (BuildConfig.DEBUG && context instanceof Activity) {
+            ((Activity) context).getApplication().registerActivityLifecycleCallbacks(new LogCallbacks((Activity) context));
+        }
+
+        if (context.getResources().getBoolean(R.bool.resource_bitmap_cache)) {
+            bitmapCache = ResourceBitmapCache.get(context);
+            sizeClass = bitmapCache.getSizeClass(width, height);
+            return;
+        }
+
+        requestManager = Glide.with(context);
+
+        // The transformation is set rather than taken from the scale type of the view,
+        // it is part of the cache key and preloads have no view
+        options = new RequestOptions()
+                .override(width, height)
+                .centerInside();
+    }
+
+    /**
+     * Load the given image into the view, at the size of the cell.
+     *
+     * @param imageResourceId - drawable resource of the image.
+     * @param imageView - of the item.
+     */
+    public void load(int imageResourceId, ImageView imageView) {
+
+        // One trace per view, a new bind cancels the load of the previous one
+        BindTrace trace = (BindTrace) imageView.getTag(R.id.item_image_trace);
+
+        if (trace == null) {
+            trace = new BindTrace();
+            imageView.setTag(R.id.item_image_trace, trace);
+        }
+
+        trace.bindTime = SystemClock.uptimeMillis();
+
+        if (bitmapCache != null) {
+            bitmapCache.load(imageResourceId, imageView, sizeClass, trace);
+            return;
+        }
+
+        requestManager
+                .load(imageResourceId)
+                .apply(options)
+                .listener(trace)
+                .into(imageView);
+    }
+
+    /**
+     * Decode the given image at the size of the cell, without a view. It is kept in the
+     * memory cache and found there once it is loaded into a view with load().
+     *
+     * @param imageResourceId - drawable resource of the image.
+     */
+    public void preload(int imageResourceId) {
+
+        if (bitmapCache != null) {
+            bitmapCache.preload(imageResourceId, sizeClass);
+            return;
+        }
+
+        requestManager
+                .load(imageResourceId)
+                .apply(options)
+                .preload(width, height);
+    }
+
+    /**
+     * Count the image that is ready to be shown.
+     */
+    private void record(Bitmap bitmap, boolean fromMemoryCache, long bindTime) {
+
+        if (fromMemoryCache) {
+            memoryCacheCount++;
+            return;
+        }
+
+        long decodeTime = SystemClock.uptimeMillis() - bindTime;
+
+        if (bitmap != null) {
+            decodedBytes += bitmap.getAllocationByteCount();
+        }
+
+        decodeCount++;
+        decodeTimes.record(decodeTime);
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "%s at %dx%d with %s: %d decoded (p50 %d ms, p95 %d ms, %d KB), " +
+                        "%d from memory cache",
+                layoutName, width, height, bitmapCache != null ? "ResourceBitmapCache" : "Glide", decodeCount, decodeTimes.getPercentile(50),
+                decodeTimes.getPercentile(95), decodedBytes / 1024, memoryCacheCount);
+    }
+
+    /**
+     * Logs the counts of the loader once its activity is destroyed, in debug builds.
+     */
+    private final class LogCallbacks implements Application.ActivityLifecycleCallbacks {
+
+        private final Activity activity;
+
+        LogCallbacks(Activity activity) {
+            this.activity = activity;
+        }
+
+        @Override
+        public void onActivityDestroyed(Activity destroyedActivity) {
+            if (destroyedActivity != activity) return;
+
+            Log.d(TAG, activity.getClass().getSimpleName() + " destroyed, " + ItemImageLoader.this);
+            activity.getApplication().unregisterActivityLifecycleCallbacks(this);
+        }
+
+        @Override
+        public void onActivityCreated(Activity activity, Bundle savedInstanceState) {
+            // Empty
+        }
+
+        @Override
+        public void onActivityStarted(Activity activity) {
+            // Empty
+        }
+
+        @Override
+        public void onActivityResumed(Activity activity) {
+            // Empty
+        }
+
+        @Override
+        public void onActivityPaused(Activity activity) {
+            // Empty
+        }
+
+        @Override
+        public void onActivityStopped(Activity activity) {
+            // Empty
+        }
+
+        @Override
+        public void onActivitySaveInstanceState(Activity activity, Bundle outState) {
+            // Empty
+        }
+    }
+
+    /**
+     * Keeps the time of the latest bind of a view, until its image is ready.
+     */
+    private final class BindTrace implements RequestListener<Drawable>,
+            ResourceBitmapCache.OnBitmapReadyListener {
+
+        long bindTime;
+
+        @Override
+        public boolean onLoadFailed(@Nullable GlideException e, Object model,
+                                    Target<Drawable> target, boolean isFirstResource) {
+            if (BuildConfig.DEBUG) Log.d(TAG, "Could not load " + model + " into " + layoutName, e);
+
+            // Let Glide handle the error
+            return false;
+        }
+
+        @Override
+        public boolean onResourceReady(Drawable resource, Object model, Target<Drawable> target,
+                                       DataSource dataSource, boolean isFirstResource) {
+            Bitmap bitmap = resource instanceof BitmapDrawable ? ((BitmapDrawable) resource).getBitmap() : null;
+            record(bitmap, dataSource == DataSource.MEMORY_CACHE, bindTime);
+
+            // Let Glide set the image
+            return false;
+        }
+
+        @Override
+        public void onBitmapReady(Bitmap bitmap, boolean fromMemoryCache) {
+            record(bitmap, fromMemoryCache, bindTime);
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.alchemistmoz.balochi.misc;
+
+import android.util.JsonWriter;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Counts the time from the request of a sound until its playback has started.
+ *
+ * The first sound of a session is kept apart from the others, since that is the one
+ * that has to wake up the audio output when it isn't warmed up.
+ *
+ * The latencies are counted in a histogram with fixed buckets, so that recording
+ * doesn't allocate and the percentiles can be read at any time. The buckets are 1 ms
+ * wide below 100 ms and 10 ms wide up to a second, later sounds share the last bucket.
+ */
+final class LatencyCounter {
+
+    private static final int FINE_LIMIT_MS = 100;
+    private static final int COARSE_LIMIT_MS = 1000;
+    private static final int COARSE_WIDTH_MS = 10;
+
+    private static final int BUCKET_COUNT =
+            FINE_LIMIT_MS + (COARSE_LIMIT_MS - FINE_LIMIT_MS) / COARSE_WIDTH_MS + 1;
+
+    // Latency of the first sound, -1 if nothing has been recorded yet
+    private long first = -1;
+
+    private int count;
+    private long total;
+    private long max;
+
+    // Number of sounds per bucket of latencies
+    private final int[] buckets = new int[BUCKET_COUNT];
+
+    /**
+     * @param latency - in milliseconds.
+     */
+    void record(long latency) {
+        if (latency < 0) latency = 0;
+        if (first < 0) first = latency;
+
+        count++;
+        total += latency;
+        max = Math.max(max, latency);
+
+        buckets[getBucket(latency)]++;
+    }
+
+    /**
+     * Start counting for a new session.
+     */
+    void reset() {
+        first = -1;
+        count = 0;
+        total = 0;
+        max = 0;
+
+        Arrays.fill(buckets, 0);
+    }
+
+    int getCount() {
+        return count;
+    }
+
+    /**
+     * @param percent - of the sounds, e.g. 95.
+     * @return latency in milliseconds that the given percent of the sounds didn't exceed,
+     *         rounded up to the bucket. 0 if nothing has been recorded.
+     */
+    long getPercentile(int percent) {
+        if (count == 0) return 0;
+
+        // Rank of the sound that is at the percentile, counted from 1
+        long rank = Math.max(1, ((long) count * percent + 99) / 100);
+        long seen = 0;
+
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += buckets[i];
+            if (seen >= rank) return Math.min(getBucketLimit(i), max);
+        }
+        return max;
+    }
+
+    /**
+     * Write the counts, the percentiles and the buckets that are not empty as a JSON object.
+     */
+    void writeJson(JsonWriter writer) throws IOException {
+        writer.beginObject();
+        writer.name("count").value(count);
+
+        if (count > 0) {
+            writer.name("first").value(first);
+            writer.name("mean").value(total / count);
+            writer.name("p50").value(getPercentile(50));
+            writer.name("p95").value(getPercentile(95));
+            writer.name("p99").value(getPercentile(99));
+            writer.name("max").value(max);
+
+            // Pairs of the upper limit of a bucket in milliseconds and its number of sounds
+            writer.name("histogram").beginArray();
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                if (buckets[i] == 0) continue;
+
+                writer.beginArray().value(getBucketLimit(i)).value(buckets[i]).endArray();
+            }
+            writer.endArray();
+        }
+
+        writer.endObject();
+    }
+
+    private static int getBucket(long latency) {
+        if (latency < FINE_LIMIT_MS) return (int) latency;
+        if (latency < COARSE_LIMIT_MS) return FINE_LIMIT_MS + (int) (latency - FINE_LIMIT_MS) / COARSE_WIDTH_MS;
+
+        return BUCKET_COUNT - 1;
+    }
+
+    /**
+     * @return highest latency in milliseconds that is counted in the given bucket.
+     */
+    private static long getBucketLimit(int bucket) {
+        if (bucket < FINE_LIMIT_MS) return bucket;
+        if (bucket < BUCKET_COUNT - 1) return FINE_LIMIT_MS + (bucket - FINE_LIMIT_MS + 1) * COARSE_WIDTH_MS - 1;
+
+        return Long.MAX_VALUE;
+    }
+
+    @Override
+    public String toString() {
+        if (count == 0) return "no sounds";
+
+        return String.format(Locale.US, "first %d ms, average %d ms, p50 %d ms, p95 %d ms, p99 %d ms, " +
+                        "max %d ms over %d sounds",
+                first, total / count, getPercentile(50), getPercentile(95), getPercentile(99), max, count);
+    }
+}
@@ -0,0 +1,283 @@
+package com.alchemistmoz.balochi.misc;
+
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.media.AudioManager;
+import android.media.MediaPlayer;
+import android.os.Build;
+
+import java.io.IOException;
+
+/**
+ * Small pool of long-lived MediaPlayers used by SoundPlayback for the clips that
+ * are not kept in the SoundPoolEngine.
+ *
+ * Instead of creating and releasing a MediaPlayer for every clip, a pooled player is
+ * reset, bound to the next clip and prepared asynchronously. Clips of the current
+ * category are bound from the ClipStore in memory, all others with the
+ * AssetFileDescriptor of the clip.
+ * The native players are only released with release(), i.e. once the app is no
+ * longer visible.
+ *
+ * All methods are to be called from the audio thread of the AudioEngine, which
+ * also receives the callbacks of the engine.
+ */
+final class MediaPlayerPool {
+
+    /**
+     * Receives the start and the end of the clips that were started with play().
+     */
+    interface OnPlayerEventListener {
+
+        /** The clip has been prepared and its playback has started. */
+        void onPlayerStart(int requestId);
+
+        void onPlayerCompletion(int requestId);
+
+        void onPlayerError(int requestId);
+    }
+
+    // Number of clips that can be playing at the same time
+    private static final int POOL_SIZE = 2;
+
+    private final Slot[] slots = new Slot[POOL_SIZE];
+
+    private final OnPlayerEventListener listener;
+
+    // Compressed clips of the current category, played from memory
+    private final ClipStore clipStore;
+
+    // Slot to be tried first by the next play(), rotates through the pool
+    private int nextSlot;
+
+    MediaPlayerPool(OnPlayerEventListener listener, ClipStore clipStore) {
+        this.listener = listener;
+        this.clipStore = clipStore;
+
+        for (int i = 0; i < POOL_SIZE; i++) {
+            slots[i] = new Slot();
+        }
+    }
+
+    /**
+     * Bind the given clip to an idle player and start it as soon as it is prepared.
+     * If all players are busy, the one that was started first is stopped and reused.
+     *
+     * @param context of the activity.
+     * @param audioResourceId - resource to be played.
+     * @param requestId - handed back to the listener when the clip has ended, not 0.
+     * @return true if the clip is being prepared for playback.
+     */
+    boolean play(Context context, int audioResourceId, int requestId) {
+        Slot slot = slots[nextSlot];
+
+        for (int i = 0; i < POOL_SIZE; i++) {
+            Slot candidate = slots[(nextSlot + i) % POOL_SIZE];
+
+            if (candidate.requestId == 0) {
+                slot = candidate;
+                break;
+            }
+        }
+
+        nextSlot = (indexOf(slot) + 1) % POOL_SIZE;
+
+        return slot.bind(context, audioResourceId, requestId);
+    }
+
+    /**
+     * Pause all clips that are playing or being prepared.
+     */
+    void pause() {
+        for (Slot slot : slots) {
+            slot.pause();
+        }
+    }
+
+    /**
+     * Resume the clips that were paused with pause().
+     */
+    void resume() {
+        for (Slot slot : slots) {
+            slot.resume();
+        }
+    }
+
+    /**
+     * Stop all clips, the players are kept for later use.
+     * The listener is not notified about the stopped clips.
+     */
+    void stop() {
+        for (Slot slot : slots) {
+            slot.stop();
+        }
+    }
+
+    /**
+     * Stop all clips and release the native players. The pool can still be used
+     * afterwards, the players are then created again as they are needed.
+     */
+    void release() {
+        for (Slot slot : slots) {
+            slot.release();
+        }
+    }
+
+    private int indexOf(Slot slot) {
+        for (int i = 0; i < POOL_SIZE; i++) {
+            if (slots[i] == slot) return i;
+        }
+        return 0;
+    }
+
+    /**
+     * A single pooled MediaPlayer and the request that it is currently playing.
+     */
+    private final class Slot implements MediaPlayer.OnPreparedListener,
+            MediaPlayer.OnCompletionListener, MediaPlayer.OnErrorListener {
+
+        // Created on first use and after release()
+        private MediaPlayer player;
+
+        // The request that is bound to the player, 0 if the player is idle
+        private int requestId;
+
+        private boolean prepared;
+        private boolean paused;
+
+        boolean bind(Context context, int audioResourceId, int requestId) {
+            byte[] data = clipStore.get(audioResourceId);
+            AssetFileDescriptor descriptor = null;
+
+            // MediaDataSource needs API 23, the clip is played from the APK below that
+            if (data == null || Build.VERSION.SDK_INT < Build.VERSION_CODES.M) {
+                descriptor = context.getResources().openRawResourceFd(audioResourceId);
+
+                // Only clips that are stored uncompressed in the APK have a file descriptor
+                if (descriptor == null) return false;
+            }
+
+            if (player == null) {
+                player = new MediaPlayer();
+                player.setOnPreparedListener(this);
+                player.setOnCompletionListener(this);
+                player.setOnErrorListener(this);
+            }
+
+            // Send the player back to the idle state, ready for a new data source
+            player.reset();
+
+            this.requestId = requestId;
+            prepared = false;
+            paused = false;
+
+            try {
+                if (descriptor == null && Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+                    player.setDataSource(new ClipDataSource(data));
+                } else {
+                    // setDataSource(AssetFileDescriptor) needs API 24, so pass the parts instead
+                    player.setDataSource(descriptor.getFileDescriptor(),
+                            descriptor.getStartOffset(), descriptor.getLength());
+                }
+                player.setAudioStreamType(AudioManager.STREAM_MUSIC);
+                player.prepareAsync();
+            } catch (IOException | IllegalStateException e) {
+                player.reset();
+                this.requestId = 0;
+                return false;
+            } finally {
+                // The player keeps its own duplicate of the file descriptor
+                if (descriptor != null) closeQuietly(descriptor);
+            }
+
+            return true;
+        }
+
+        void pause() {
+            if (requestId == 0) return;
+
+            paused = true;
+
+            // Rewind, so that the word is played from the beginning on resume
+            if (prepared) {
+                player.pause();
+                player.seekTo(0);
+            }
+        }
+
+        void resume() {
+            if (requestId == 0 || !paused) return;
+
+            paused = false;
+
+            if (prepared) {
+                player.start();
+            }
+        }
+
+        void stop() {
+            if (requestId == 0) return;
+
+            requestId = 0;
+            prepared = false;
+            paused = false;
+
+            // Stop any media and send the player back to the idle state
+            player.reset();
+        }
+
+        void release() {
+            stop();
+
+            if (player != null) {
+                player.release();
+                player = null;
+            }
+        }
+
+        @Override
+        public void onPrepared(MediaPlayer mediaPlayer) {
+            if (requestId == 0) return;
+
+            prepared = true;
+
+            if (!paused) {
+                player.start();
+                listener.onPlayerStart(requestId);
+            }
+        }
+
+        @Override
+        public void onCompletion(MediaPlayer mediaPlayer) {
+            int finished = requestId;
+
+            requestId = 0;
+            prepared = false;
+
+            if (finished != 0) {
+                listener.onPlayerCompletion(finished);
+            }
+        }
+
+        @Override
+        public boolean onError(MediaPlayer mediaPlayer, int what, int extra) {
+            int failed = requestId;
+
+            // The player is in the error state and has to be reset before it can be used again
+            stop();
+
+            if (failed != 0) {
+                listener.onPlayerError(failed);
+            }
+            return true;
+        }
+    }
+
+    private static void closeQuietly(AssetFileDescriptor descriptor) {
+        try {
+            descriptor.close();
+        } catch (IOException e) {
+            // Nothing left to clean up
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package com.alchemistmoz.balochi.misc;
+
+import android.media.AudioFormat;
+import android.media.AudioManager;
+import android.media.AudioTrack;
+import android.os.Build;
+import android.os.Handler;
+
+/**
+ * Loops a background music clip softly under the other sounds of the app.
+ *
+ * The clip is decoded once and written to a single static track, which loops it
+ * with its loop points. The loop is gapless and playback doesn't allocate anything,
+ * pausing and resuming only stops and restarts the same track. The track is kept
+ * when the music is paused, so it survives the transitions between the activities.
+ *
+ * While words are playing the music is ducked, the gain is ramped down in small
+ * steps and back up again once the words have ended.
+ *
+ * The whole clip is held by the track, so the clip is to be a short loop, mono and
+ * no more than a few seconds long.
+ *
+ * All methods are to be called from the thread of the given handler.
+ */
+final class MusicChannel {
+
+    // Volume of the music on its own and while words are playing
+    private static final float MUSIC_GAIN = 0.3f;
+    private static final float DUCKED_GAIN = 0.08f;
+
+    // Time it takes to duck the music, and the time between the steps of the ramp
+    private static final int DUCK_RAMP_MS = 120;
+    private static final int DUCK_STEP_MS = 10;
+
+    private static final float DUCK_STEP = (MUSIC_GAIN - DUCKED_GAIN) * DUCK_STEP_MS / DUCK_RAMP_MS;
+
+    private final Handler handler;
+
+    private AudioTrack track;
+
+    // The clip that is written to the track
+    private PcmClip trackClip;
+
+    private boolean playing;
+
+    private float gain = MUSIC_GAIN;
+    private float targetGain = MUSIC_GAIN;
+
+    /**
+     * Moves the gain one step closer to the target gain, until it is reached.
+     */
+    private final Runnable rampStep = new Runnable() {
+        @Override
+        public void run() {
+            if (gain < targetGain) {
+                gain = Math.min(targetGain, gain + DUCK_STEP);
+            } else {
+                gain = Math.max(targetGain, gain - DUCK_STEP);
+            }
+
+            applyGain();
+
+            if (gain != targetGain) {
+                handler.postDelayed(this, DUCK_STEP_MS);
+            }
+        }
+    };
+
+    MusicChannel(Handler handler) {
+        this.handler = handler;
+    }
+
+    /**
+     * @return true if the given clip is already written to the track.
+     */
+    boolean holds(PcmClip clip) {
+        return clip != null && clip == trackClip;
+    }
+
+    /**
+     * Write the clip to the track, the clip that was there before is released.
+     *
+     * @return true if the clip can be played.
+     */
+    boolean setClip(PcmClip clip) {
+        if (holds(clip)) return true;
+
+        release();
+
+        track = createTrack(clip);
+        if (track == null) return false;
+
+        trackClip = clip;
+        return true;
+    }
+
+    /**
+     * Start or continue the loop from where it was paused.
+     *
+     * @return true if the music is playing.
+     */
+    boolean play() {
+        if (track == null) return false;
+
+        if (!playing) {
+            applyGain();
+            track.play();
+            playing = true;
+        }
+        return true;
+    }
+
+    void pause() {
+        if (playing) {
+            track.pause();
+            playing = false;
+        }
+    }
+
+    /**
+     * Lower the music while words are playing, or bring it back up.
+     */
+    void setDucked(boolean ducked) {
+        float target = ducked ? DUCKED_GAIN : MUSIC_GAIN;
+        if (target == targetGain) return;
+
+        targetGain = target;
+
+        handler.removeCallbacks(rampStep);
+
+        // A paused track starts at the right gain right away
+        if (playing) {
+            handler.post(rampStep);
+        } else {
+            gain = targetGain;
+        }
+    }
+
+    /**
+     * Stop the music and release the track together with the clip.
+     */
+    void release() {
+        handler.removeCallbacks(rampStep);
+        pause();
+
+        if (track != null) {
+            track.release();
+            track = null;
+            trackClip = null;
+        }
+    }
+
+    /**
+     * setVolume() only exists from Lollipop, use setStereoVolume() below that.
+     */
+    @SuppressWarnings("deprecation")
+    private void applyGain() {
+        if (track == null) return;
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            track.setVolume(gain);
+        } else {
+            track.setStereoVolume(gain, gain);
+        }
+    }
+
+    /**
+     * @return a static track that loops the samples of the clip, or null on failure.
+     */
+    @SuppressWarnings("deprecation")
+    private static AudioTrack createTrack(PcmClip clip) {
+        int channelConfig = clip.channels == 1 ? AudioFormat.CHANNEL_OUT_MONO : AudioFormat.CHANNEL_OUT_STEREO;
+
+        AudioTrack audioTrack;
+
+        try {
+            audioTrack = new AudioTrack(AudioManager.STREAM_MUSIC, clip.sampleRate, channelConfig,
+                    AudioFormat.ENCODING_PCM_16BIT, clip.getByteSize(), AudioTrack.MODE_STATIC);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+
+        // A static track is only fully initialized once its samples have been written
+        if (audioTrack.write(clip.samples, 0, clip.samples.length) != clip.samples.length ||
+                audioTrack.getState() != AudioTrack.STATE_INITIALIZED ||
+                audioTrack.setLoopPoints(0, clip.getFrameCount(), -1) != AudioTrack.SUCCESS) {
+            audioTrack.release();
+            return null;
+        }
+
+        return audioTrack;
+    }
+}
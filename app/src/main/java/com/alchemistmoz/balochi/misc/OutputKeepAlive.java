@@ -0,0 +1,69 @@
+package com.alchemistmoz.balochi.misc;
+
+import android.media.AudioFormat;
+import android.media.AudioManager;
+import android.media.AudioTrack;
+
+/**
+ * Keeps the audio output of the device awake during a game session.
+ *
+ * The output goes to standby a few seconds after the last sound, and has to be woken up
+ * again for the next one, which makes the first sound after a pause noticeably late.
+ * A short buffer of silence is looped on a static track, so that the output stays
+ * active without the app writing any samples.
+ *
+ * All methods are to be called from the audio thread of the AudioEngine.
+ */
+final class OutputKeepAlive {
+
+    // Length of the silent buffer that is looped
+    private static final int BUFFER_MS = 100;
+
+    private AudioTrack track;
+
+    /**
+     * Prime the output with silence and keep it looping until stop().
+     *
+     * @param sampleRate - of the audio output, so that the platform doesn't have to resample the silence.
+     * @return true if the output is kept awake.
+     */
+    @SuppressWarnings("deprecation")
+    boolean start(int sampleRate) {
+        if (track != null) return true;
+
+        short[] silence = new short[sampleRate * BUFFER_MS / 1000];
+
+        AudioTrack audioTrack;
+
+        try {
+            audioTrack = new AudioTrack(AudioManager.STREAM_MUSIC, sampleRate, AudioFormat.CHANNEL_OUT_MONO,
+                    AudioFormat.ENCODING_PCM_16BIT, silence.length * 2, AudioTrack.MODE_STATIC);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+
+        // A static track is only fully initialized once its samples have been written
+        if (audioTrack.write(silence, 0, silence.length) != silence.length ||
+                audioTrack.getState() != AudioTrack.STATE_INITIALIZED ||
+                audioTrack.setLoopPoints(0, silence.length, -1) != AudioTrack.SUCCESS) {
+            audioTrack.release();
+            return false;
+        }
+
+        audioTrack.play();
+
+        track = audioTrack;
+        return true;
+    }
+
+    /**
+     * Stop the silence and let the output go to standby.
+     */
+    void stop() {
+        if (track != null) {
+            track.stop();
+            track.release();
+            track = null;
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package com.alchemistmoz.balochi.misc;
+
+import android.content.Context;
+import android.os.Handler;
+import android.util.LruCache;
+import android.util.SparseBooleanArray;
+
+import com.alchemistmoz.balochi.R;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Keeps the clips that have been played decoded in memory, so that they are not
+ * decoded again every time they are played.
+ *
+ * The total size of the decoded clips is limited by a byte budget that depends on
+ * the RAM class of the device, see the pcm_cache_kb_xxx integer resources and
+ * Utilities.getRamClass(). The least
+ * recently played clips are evicted once the budget is exceeded.
+ *
+ * The clips are resampled to the sample rate of the audio output as they are decoded,
+ * see PcmResampler, so that the PcmMixer can play them on the fast mixer.
+ *
+ * Rendered SoundSequences are kept in the same cache under the key of the sequence,
+ * see putRendered(), and share the byte budget with the clips.
+ *
+ * Clips are decoded in the background with prefetch() and added to the cache on the
+ * thread of the given handler. All methods except getOrDecode() and putRendered()
+ * are to be called from that thread.
+ */
+final class PcmCache {
+
+    private final Context context;
+
+    // Thread that owns the cache
+    private final Handler handler;
+
+    // Sample rate of the decoded clips, i.e. of the audio output
+    private final int sampleRate;
+
+    // Compressed clips of the current category, decoded from memory
+    private final ClipStore clipStore;
+
+    // Audio resource ID -> decoded clip, or sequence key -> rendered sequence
+    private final LruCache<Object, PcmClip> clips;
+
+    // Audio resource ID's that are currently being decoded
+    private final SparseBooleanArray pendingDecodes = new SparseBooleanArray();
+
+    // Decodes the clips off the thread that owns the cache
+    private final ExecutorService decodeExecutor = Executors.newSingleThreadExecutor();
+
+    /**
+     * @param context of the application.
+     * @param handler - of the thread that uses the cache.
+     * @param sampleRate - to resample the decoded clips to.
+     * @param clipStore - where the compressed clips are taken from, if present.
+     */
+    PcmCache(Context context, Handler handler, int sampleRate, ClipStore clipStore) {
+        this.context = context;
+        this.handler = handler;
+        this.sampleRate = sampleRate;
+        this.clipStore = clipStore;
+
+        int byteBudget = Utilities.getByteBudget(context, R.integer.pcm_cache_kb_low_ram,
+                R.integer.pcm_cache_kb_small, R.integer.pcm_cache_kb_medium, R.integer.pcm_cache_kb_large);
+
+        clips = new LruCache<Object, PcmClip>(byteBudget) {
+            @Override
+            protected int sizeOf(Object key, PcmClip clip) {
+                return clip.getByteSize();
+            }
+        };
+    }
+
+    /**
+     * @return the decoded clip, or null if it is not in the cache.
+     */
+    PcmClip get(int audioResourceId) {
+        return clips.get(audioResourceId);
+    }
+
+    /**
+     * Get the clip from the cache or decode it right away. Unlike the other methods,
+     * this one is to be called from a background thread.
+     *
+     * @return the decoded clip, or null if it could not be decoded.
+     */
+    PcmClip getOrDecode(int audioResourceId) {
+        PcmClip clip = clips.get(audioResourceId);
+
+        if (clip == null) {
+            clip = decode(audioResourceId);
+
+            if (clip != null && clip.getByteSize() <= clips.maxSize()) {
+                clips.put(audioResourceId, clip);
+            }
+        }
+        return clip;
+    }
+
+    /**
+     * @param key - of the sequence, see SoundSequence.getKey().
+     * @return the rendered sequence, or null if it is not in the cache.
+     */
+    PcmClip getRendered(String key) {
+        return clips.get(key);
+    }
+
+    /**
+     * Keep a rendered sequence, so that it is not rendered again when it is replayed.
+     * Can be called from the thread that rendered the sequence.
+     *
+     * @param key - of the sequence, see SoundSequence.getKey().
+     * @param clip - the rendered sequence.
+     */
+    void putRendered(String key, PcmClip clip) {
+        if (clip.getByteSize() <= clips.maxSize()) {
+            clips.put(key, clip);
+        }
+    }
+
+    /**
+     * Decode the given clip in the background, unless it is already cached or being decoded.
+     */
+    void prefetch(final int audioResourceId) {
+        if (clips.get(audioResourceId) != null || pendingDecodes.get(audioResourceId)) return;
+
+        pendingDecodes.put(audioResourceId, true);
+
+        decodeExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final PcmClip clip = decode(audioResourceId);
+
+                handler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        pendingDecodes.delete(audioResourceId);
+
+                        // A clip larger than the whole budget would only evict everything else
+                        if (clip != null && clip.getByteSize() <= clips.maxSize()) {
+                            clips.put(audioResourceId, clip);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Decode the clip and bring it to the sample rate of the cache, in the calling thread.
+     */
+    private PcmClip decode(int audioResourceId) {
+        PcmClip clip = PcmDecoder.decode(context, audioResourceId, clipStore.get(audioResourceId));
+
+        return PcmResampler.resample(clip, sampleRate);
+    }
+
+    /**
+     * Drop all decoded clips.
+     */
+    void evictAll() {
+        clips.evictAll();
+    }
+}
@@ -0,0 +1,38 @@
+package com.alchemistmoz.balochi.misc;
+
+/**
+ * A clip that has been decoded to 16 bit PCM, with the channels interleaved.
+ */
+final class PcmClip {
+
+    final short[] samples;
+    final int sampleRate;
+    final int channels;
+
+    PcmClip(short[] samples, int sampleRate, int channels) {
+        this.samples = samples;
+        this.sampleRate = sampleRate;
+        this.channels = channels;
+    }
+
+    /**
+     * @return number of frames, i.e. samples per channel.
+     */
+    int getFrameCount() {
+        return samples.length / channels;
+    }
+
+    /**
+     * @return size of the decoded samples in bytes.
+     */
+    int getByteSize() {
+        return samples.length * 2;
+    }
+
+    /**
+     * @return duration of the clip in milliseconds.
+     */
+    int getDuration() {
+        return (int) (getFrameCount() * 1000L / sampleRate);
+    }
+}
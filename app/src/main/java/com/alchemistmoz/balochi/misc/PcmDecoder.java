@@ -0,0 +1,181 @@
+package com.alchemistmoz.balochi.misc;
+
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.media.MediaCodec;
+import android.media.MediaExtractor;
+import android.media.MediaFormat;
+import android.os.Build;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+import java.util.Arrays;
+
+/**
+ * Decodes the clips in res/raw to PcmClips with MediaExtractor and MediaCodec.
+ * Clips that are in the ClipStore are decoded from memory instead of the APK.
+ *
+ * Decoding blocks until the whole clip is decoded, so it is never to be done
+ * on the main thread or the audio thread.
+ */
+final class PcmDecoder {
+
+    // How long to wait for a codec buffer in microseconds
+    private static final long TIMEOUT_US = 10000;
+
+    // Give up when the codec has not made any progress for this many attempts
+    private static final int MAX_IDLE_ATTEMPTS = 200;
+
+    /**
+     * Prevent user from instantiating the class.
+     */
+    private PcmDecoder() {
+        // Empty
+    }
+
+    /**
+     * @param context of the application.
+     * @param audioResourceId - resource to be decoded.
+     * @param data - compressed bytes of the clip from the ClipStore, or null to read it from the APK.
+     * @return the decoded clip, or null if it could not be decoded.
+     */
+    static PcmClip decode(Context context, int audioResourceId, byte[] data) {
+        AssetFileDescriptor descriptor = null;
+        MediaExtractor extractor = new MediaExtractor();
+        MediaCodec codec = null;
+
+        try {
+            if (data != null && Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+                extractor.setDataSource(new ClipDataSource(data));
+            } else {
+                descriptor = context.getResources().openRawResourceFd(audioResourceId);
+
+                // Only clips that are stored uncompressed in the APK have a file descriptor
+                if (descriptor == null) return null;
+
+                extractor.setDataSource(descriptor.getFileDescriptor(),
+                        descriptor.getStartOffset(), descriptor.getLength());
+            }
+
+            int track = selectAudioTrack(extractor);
+            if (track < 0) return null;
+
+            extractor.selectTrack(track);
+            MediaFormat format = extractor.getTrackFormat(track);
+
+            int sampleRate = format.getInteger(MediaFormat.KEY_SAMPLE_RATE);
+            int channels = format.getInteger(MediaFormat.KEY_CHANNEL_COUNT);
+
+            codec = MediaCodec.createDecoderByType(format.getString(MediaFormat.KEY_MIME));
+            codec.configure(format, null, null, 0);
+            codec.start();
+
+            // Size the output from the index, it is grown if the estimate falls short
+            int estimate = (int) ((long) AudioIndex.getDuration(audioResourceId) * sampleRate / 1000) * channels;
+            short[] samples = new short[Math.max(estimate, sampleRate) + sampleRate / 10];
+            int length = 0;
+
+            // getInputBuffer(int) and getOutputBuffer(int) need API 21
+            @SuppressWarnings("deprecation")
+            ByteBuffer[] inputBuffers = codec.getInputBuffers();
+            @SuppressWarnings("deprecation")
+            ByteBuffer[] outputBuffers = codec.getOutputBuffers();
+
+            MediaCodec.BufferInfo info = new MediaCodec.BufferInfo();
+            boolean inputDone = false;
+            int idleAttempts = 0;
+
+            while (idleAttempts < MAX_IDLE_ATTEMPTS) {
+                idleAttempts++;
+
+                if (!inputDone) {
+                    int inputIndex = codec.dequeueInputBuffer(TIMEOUT_US);
+
+                    if (inputIndex >= 0) {
+                        ByteBuffer buffer = inputBuffers[inputIndex];
+                        buffer.clear();
+
+                        int size = extractor.readSampleData(buffer, 0);
+
+                        if (size < 0) {
+                            codec.queueInputBuffer(inputIndex, 0, 0, 0, MediaCodec.BUFFER_FLAG_END_OF_STREAM);
+                            inputDone = true;
+                        } else {
+                            codec.queueInputBuffer(inputIndex, 0, size, extractor.getSampleTime(), 0);
+                            extractor.advance();
+                        }
+                        idleAttempts = 0;
+                    }
+                }
+
+                int outputIndex = codec.dequeueOutputBuffer(info, TIMEOUT_US);
+
+                if (outputIndex >= 0) {
+                    if (info.size > 0) {
+                        ByteBuffer buffer = outputBuffers[outputIndex];
+                        buffer.position(info.offset);
+                        buffer.limit(info.offset + info.size);
+
+                        ShortBuffer shorts = buffer.order(ByteOrder.nativeOrder()).asShortBuffer();
+                        int count = shorts.remaining();
+
+                        if (length + count > samples.length) {
+                            samples = Arrays.copyOf(samples, Math.max(samples.length * 2, length + count));
+                        }
+
+                        shorts.get(samples, length, count);
+                        length += count;
+                    }
+
+                    codec.releaseOutputBuffer(outputIndex, false);
+                    idleAttempts = 0;
+
+                    if ((info.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0) {
+                        return new PcmClip(Arrays.copyOf(samples, length), sampleRate, channels);
+                    }
+                } else if (outputIndex == MediaCodec.INFO_OUTPUT_BUFFERS_CHANGED) {
+                    outputBuffers = codec.getOutputBuffers();
+                } else if (outputIndex == MediaCodec.INFO_OUTPUT_FORMAT_CHANGED) {
+                    // The decoder tells the actual layout of its output
+                    MediaFormat outputFormat = codec.getOutputFormat();
+                    sampleRate = outputFormat.getInteger(MediaFormat.KEY_SAMPLE_RATE);
+                    channels = outputFormat.getInteger(MediaFormat.KEY_CHANNEL_COUNT);
+                }
+            }
+
+            return null;
+        } catch (IOException | RuntimeException e) {
+            return null;
+        } finally {
+            if (codec != null) {
+                try {
+                    codec.stop();
+                } catch (IllegalStateException e) {
+                    // The codec was never started
+                }
+                codec.release();
+            }
+            extractor.release();
+
+            try {
+                if (descriptor != null) descriptor.close();
+            } catch (IOException e) {
+                // Nothing left to clean up
+            }
+        }
+    }
+
+    /**
+     * @return index of the first audio track of the extractor, -1 if none.
+     */
+    private static int selectAudioTrack(MediaExtractor extractor) {
+        for (int i = 0; i < extractor.getTrackCount(); i++) {
+            String mime = extractor.getTrackFormat(i).getString(MediaFormat.KEY_MIME);
+
+            if (mime != null && mime.startsWith("audio/")) return i;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,301 @@
+package com.alchemistmoz.balochi.misc;
+
+import android.annotation.TargetApi;
+import android.media.AudioAttributes;
+import android.media.AudioFormat;
+import android.media.AudioManager;
+import android.media.AudioTrack;
+import android.os.Build;
+import android.os.Handler;
+
+/**
+ * Small mixer with a fixed number of voices, so that feedback effects can be played
+ * on top of the words instead of replacing them.
+ *
+ * Each voice plays a PcmClip through its own AudioTrack in static mode, with its own
+ * gain. The platform mixes the voices, the clips are already decoded. The samples are
+ * written to a track once, so a clip that is played again on the same voice, e.g. with
+ * the speaker button of the audio match game, only has to rewind the track.
+ *
+ * When all voices are busy, the voice with the lowest priority is stolen, the oldest
+ * one first. A voice is never stolen for a sound of lower priority.
+ *
+ * The clips from the PcmCache are at the sample rate of the audio output, so the tracks
+ * qualify for the fast mixer. From Oreo on the tracks also ask for low latency.
+ *
+ * All methods are to be called from the thread of the given handler, which also
+ * receives the end of the clips.
+ */
+final class PcmMixer {
+
+    /**
+     * Receives the end of the clips that were started with play().
+     * Clips that are stopped with stop() are not reported.
+     */
+    interface OnVoiceEndListener {
+
+        void onVoiceCompletion(int requestId);
+
+        /** The voice of the request was taken over by a sound of the same or higher priority. */
+        void onVoiceStolen(int requestId);
+    }
+
+    // Priorities of the sounds, a voice can only be stolen by a sound of the same or higher priority
+    static final int PRIORITY_EFFECT = 0;
+    static final int PRIORITY_WORD = 1;
+
+    // A word and two overlapping effects
+    private static final int VOICE_COUNT = 3;
+
+    private final Voice[] voices = new Voice[VOICE_COUNT];
+
+    private final Handler handler;
+
+    private final OnVoiceEndListener listener;
+
+    // Increases with every started clip, tells which voice is the oldest
+    private long startCounter;
+
+    PcmMixer(Handler handler, OnVoiceEndListener listener) {
+        this.handler = handler;
+        this.listener = listener;
+
+        for (int i = 0; i < VOICE_COUNT; i++) {
+            voices[i] = new Voice();
+        }
+    }
+
+    /**
+     * Start playback of the given clip on a free voice, or on a stolen one.
+     *
+     * @param clip - to be played.
+     * @param requestId - handed back to the listener when the clip has ended, not 0.
+     * @param priority - PRIORITY_XXX of the sound.
+     * @param gain - volume of the voice, from 0 to 1.
+     * @return true if playback was started.
+     */
+    boolean play(PcmClip clip, int requestId, int priority, float gain) {
+        Voice voice = findVoice(clip, priority);
+        if (voice == null) return false;
+
+        int stolenRequestId = voice.requestId;
+        boolean started = voice.play(clip, requestId, priority, gain, ++startCounter);
+
+        if (stolenRequestId != 0) {
+            listener.onVoiceStolen(stolenRequestId);
+        }
+        return started;
+    }
+
+    /**
+     * Free voices are preferred, the one that already holds the clip first. Otherwise
+     * the oldest voice with the lowest priority that is not above the given priority.
+     *
+     * @return the voice to play the clip on, null if all voices are busy with more important sounds.
+     */
+    private Voice findVoice(PcmClip clip, int priority) {
+        Voice free = null;
+        Voice stolen = null;
+
+        for (Voice voice : voices) {
+            if (voice.requestId == 0) {
+                if (voice.trackClip == clip) return voice;
+                if (free == null) free = voice;
+
+            } else if (voice.priority <= priority && (stolen == null ||
+                    voice.priority < stolen.priority ||
+                    (voice.priority == stolen.priority && voice.startOrder < stolen.startOrder))) {
+                stolen = voice;
+            }
+        }
+
+        return free != null ? free : stolen;
+    }
+
+    /**
+     * Stop the voice that is playing the given request, if any. The listener is not notified.
+     */
+    void stop(int requestId) {
+        for (Voice voice : voices) {
+            if (voice.requestId == requestId) voice.stop();
+        }
+    }
+
+    void pause() {
+        for (Voice voice : voices) {
+            voice.pause();
+        }
+    }
+
+    void resume() {
+        for (Voice voice : voices) {
+            voice.resume();
+        }
+    }
+
+    /**
+     * Stop all voices and release their tracks.
+     */
+    void release() {
+        for (Voice voice : voices) {
+            voice.stop();
+            voice.releaseTrack();
+        }
+    }
+
+    /**
+     * A single voice of the mixer, playing one clip at a time.
+     */
+    private final class Voice implements AudioTrack.OnPlaybackPositionUpdateListener {
+
+        private AudioTrack track;
+
+        // The clip that is written to the track
+        private PcmClip trackClip;
+
+        // The request that is playing, 0 if none
+        private int requestId;
+
+        private int priority;
+        private long startOrder;
+
+        boolean play(PcmClip clip, int requestId, int priority, float gain, long startOrder) {
+            stop();
+
+            if (clip != trackClip) {
+                releaseTrack();
+
+                track = createTrack(clip);
+                if (track == null) return false;
+
+                trackClip = clip;
+            } else {
+                // Rewind the samples that are already written to the track
+                track.reloadStaticData();
+            }
+
+            setGain(gain);
+            track.setNotificationMarkerPosition(clip.getFrameCount());
+            track.play();
+
+            this.requestId = requestId;
+            this.priority = priority;
+            this.startOrder = startOrder;
+            return true;
+        }
+
+        void pause() {
+            if (requestId != 0) {
+                track.pause();
+            }
+        }
+
+        void resume() {
+            if (requestId != 0) {
+                track.play();
+            }
+        }
+
+        void stop() {
+            requestId = 0;
+
+            if (track != null && track.getPlayState() != AudioTrack.PLAYSTATE_STOPPED) {
+                track.stop();
+            }
+        }
+
+        void releaseTrack() {
+            if (track != null) {
+                track.release();
+                track = null;
+                trackClip = null;
+            }
+        }
+
+        /**
+         * setVolume() only exists from Lollipop, use setStereoVolume() below that.
+         */
+        @SuppressWarnings("deprecation")
+        private void setGain(float gain) {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+                track.setVolume(gain);
+            } else {
+                track.setStereoVolume(gain, gain);
+            }
+        }
+
+        /**
+         * @return a static track with the samples of the clip written to it, or null on failure.
+         */
+        @SuppressWarnings("deprecation")
+        private AudioTrack createTrack(PcmClip clip) {
+            int channelConfig = clip.channels == 1 ? AudioFormat.CHANNEL_OUT_MONO : AudioFormat.CHANNEL_OUT_STEREO;
+
+            AudioTrack audioTrack;
+
+            try {
+                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+                    audioTrack = createLowLatencyTrack(clip, channelConfig);
+                } else {
+                    audioTrack = new AudioTrack(AudioManager.STREAM_MUSIC, clip.sampleRate, channelConfig,
+                            AudioFormat.ENCODING_PCM_16BIT, clip.getByteSize(), AudioTrack.MODE_STATIC);
+                }
+            } catch (IllegalArgumentException | UnsupportedOperationException e) {
+                return null;
+            }
+
+            // A static track is only fully initialized once its samples have been written
+            if (audioTrack.write(clip.samples, 0, clip.samples.length) != clip.samples.length ||
+                    audioTrack.getState() != AudioTrack.STATE_INITIALIZED) {
+                audioTrack.release();
+                return null;
+            }
+
+            audioTrack.setPlaybackPositionUpdateListener(this, handler);
+            return audioTrack;
+        }
+
+        /**
+         * Same track on the music stream, with the performance mode set to low latency.
+         */
+        @TargetApi(Build.VERSION_CODES.O)
+        private AudioTrack createLowLatencyTrack(PcmClip clip, int channelConfig) {
+            AudioAttributes attributes = new AudioAttributes.Builder()
+                    .setUsage(AudioAttributes.USAGE_MEDIA)
+                    .setContentType(AudioAttributes.CONTENT_TYPE_SPEECH)
+                    .build();
+
+            AudioFormat format = new AudioFormat.Builder()
+                    .setSampleRate(clip.sampleRate)
+                    .setChannelMask(channelConfig)
+                    .setEncoding(AudioFormat.ENCODING_PCM_16BIT)
+                    .build();
+
+            return new AudioTrack.Builder()
+                    .setAudioAttributes(attributes)
+                    .setAudioFormat(format)
+                    .setBufferSizeInBytes(clip.getByteSize())
+                    .setTransferMode(AudioTrack.MODE_STATIC)
+                    .setPerformanceMode(AudioTrack.PERFORMANCE_MODE_LOW_LATENCY)
+                    .build();
+        }
+
+        /**
+         * Triggered when the track has played all frames of the clip.
+         */
+        @Override
+        public void onMarkerReached(AudioTrack audioTrack) {
+            if (audioTrack != track || requestId == 0) return;
+
+            int finished = requestId;
+            requestId = 0;
+
+            listener.onVoiceCompletion(finished);
+        }
+
+        @Override
+        public void onPeriodicNotification(AudioTrack audioTrack) {
+            // Empty
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.alchemistmoz.balochi.misc;
+
+import android.content.Context;
+import android.media.AudioManager;
+import android.media.AudioTrack;
+
+/**
+ * Converts PcmClips to the sample rate of the audio output of the device.
+ *
+ * The clips are recorded at 16 kHz and 44.1 kHz, while the output mostly runs at 48 kHz.
+ * A track at another rate than the output goes through the resampler of the platform and
+ * is refused the low latency fast mixer. The clips are therefore resampled once, when they
+ * are decoded into the PcmCache, so that the PcmMixer plays them at the output rate.
+ *
+ * A windowed sinc filter is used, with the coefficients looked up from a table of fixed
+ * phases. Resampling blocks until the whole clip is done, so it is never to be done on
+ * the main thread or the audio thread.
+ */
+final class PcmResampler {
+
+    // Zero crossings of the sinc on each side of the sample
+    private static final int HALF_TAPS = 16;
+    private static final int TAPS = HALF_TAPS * 2;
+
+    // Positions between two input frames that have their own coefficients
+    private static final int PHASES = 256;
+
+    // Part of the lower Nyquist frequency that is kept, the rest is the transition band
+    private static final double CUTOFF = 0.95;
+
+    // Used when the output sample rate can't be read from the AudioManager
+    private static final int DEFAULT_SAMPLE_RATE = 44100;
+
+    /**
+     * Prevent user from instantiating the class.
+     */
+    private PcmResampler() {
+        // Empty
+    }
+
+    /**
+     * @param context of the application.
+     * @return sample rate of the audio output of the device in Hz.
+     */
+    static int getOutputSampleRate(Context context) {
+        AudioManager audioManager = (AudioManager) context.getSystemService(Context.AUDIO_SERVICE);
+        String property = audioManager.getProperty(AudioManager.PROPERTY_OUTPUT_SAMPLE_RATE);
+
+        try {
+            if (property != null) return Integer.parseInt(property);
+        } catch (NumberFormatException e) {
+            // Fall back to the rate of the music stream below
+        }
+
+        int sampleRate = AudioTrack.getNativeOutputSampleRate(AudioManager.STREAM_MUSIC);
+        return sampleRate > 0 ? sampleRate : DEFAULT_SAMPLE_RATE;
+    }
+
+    /**
+     * @param clip - to be resampled.
+     * @param sampleRate - of the resampled clip.
+     * @return the clip at the given sample rate, the same clip if it is already at that rate.
+     */
+    static PcmClip resample(PcmClip clip, int sampleRate) {
+        if (clip == null || clip.sampleRate == sampleRate) return clip;
+
+        float[][] filter = createFilter(clip.sampleRate, sampleRate);
+
+        int channels = clip.channels;
+        int sourceFrames = clip.getFrameCount();
+        int frames = (int) ((long) sourceFrames * sampleRate / clip.sampleRate);
+
+        short[] output = new short[frames * channels];
+
+        for (int frame = 0; frame < frames; frame++) {
+            // Position of the output frame in the input, as a frame and a phase in between
+            long sourcePosition = (long) frame * clip.sampleRate;
+            int index = (int) (sourcePosition / sampleRate);
+            int phase = (int) ((sourcePosition % sampleRate) * PHASES / sampleRate);
+
+            float[] coefficients = filter[phase];
+            int first = index - HALF_TAPS + 1;
+
+            for (int channel = 0; channel < channels; channel++) {
+                float sum = 0;
+
+                for (int tap = 0; tap < TAPS; tap++) {
+                    int sourceFrame = first + tap;
+
+                    // The clip is silent outside of its frames
+                    if (sourceFrame >= 0 && sourceFrame < sourceFrames) {
+                        sum += clip.samples[sourceFrame * channels + channel] * coefficients[tap];
+                    }
+                }
+
+                output[frame * channels + channel] = clamp(sum);
+            }
+        }
+
+        return new PcmClip(output, sampleRate, channels);
+    }
+
+    /**
+     * Blackman windowed sinc, with the cutoff below the Nyquist frequency of the lower
+     * of both rates, so that downsampling doesn't alias.
+     *
+     * @return the coefficients of each tap, for each phase.
+     */
+    private static float[][] createFilter(int sourceRate, int targetRate) {
+        double cutoff = CUTOFF * Math.min(1.0, (double) targetRate / sourceRate);
+        float[][] filter = new float[PHASES][TAPS];
+
+        for (int phase = 0; phase < PHASES; phase++) {
+            double offset = (double) phase / PHASES;
+
+            for (int tap = 0; tap < TAPS; tap++) {
+                // Distance from the output position to the input frame of the tap
+                double x = tap - HALF_TAPS + 1 - offset;
+                double window = 0.42 + 0.5 * Math.cos(Math.PI * x / HALF_TAPS) +
+                        0.08 * Math.cos(2 * Math.PI * x / HALF_TAPS);
+
+                filter[phase][tap] = (float) (cutoff * sinc(cutoff * x) * window);
+            }
+        }
+
+        return filter;
+    }
+
+    private static double sinc(double x) {
+        if (x == 0) return 1;
+
+        return Math.sin(Math.PI * x) / (Math.PI * x);
+    }
+
+    private static short clamp(float sample) {
+        if (sample > Short.MAX_VALUE) return Short.MAX_VALUE;
+        if (sample < Short.MIN_VALUE) return Short.MIN_VALUE;
+
+        return (short) Math.round(sample);
+    }
+}
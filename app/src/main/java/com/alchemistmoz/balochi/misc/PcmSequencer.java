@@ -0,0 +1,195 @@
+package com.alchemistmoz.balochi.misc;
+
+/**
+ * Renders a SoundSequence into a single PcmClip, so that the clips are played
+ * gaplessly as one stream.
+ *
+ * The clips are converted to the highest sample rate and channel count among them.
+ * Rendering blocks until all clips are decoded, so it is never to be done on the
+ * main thread or the audio thread.
+ *
+ * Clips that are joined with a crossfade are spliced into one utterance: the silence
+ * at the end of the first clip and at the start of the second clip is trimmed to a
+ * short margin, and the second clip fades in while the first one fades out.
+ */
+final class PcmSequencer {
+
+    // Samples at or below this level count as silence at a splice, about -45 dBFS like
+    // the threshold of the trimAudioSilence build task
+    private static final int SILENCE_THRESHOLD = 184;
+
+    // Silence that is kept at a splice, so that the words don't sound cut off
+    private static final int SPLICE_MARGIN_MS = 20;
+
+    /**
+     * Prevent user from instantiating the class.
+     */
+    private PcmSequencer() {
+        // Empty
+    }
+
+    /**
+     * @param cache - where the decoded clips are taken from and added to.
+     * @param sequence - to be rendered.
+     * @return the rendered sequence, or null if one of the clips could not be decoded.
+     */
+    static PcmClip render(PcmCache cache, SoundSequence sequence) {
+        int count = sequence.size();
+        if (count == 0) return null;
+
+        PcmClip[] clips = new PcmClip[count];
+        int sampleRate = 0;
+        int channels = 0;
+
+        for (int i = 0; i < count; i++) {
+            clips[i] = cache.getOrDecode(sequence.getClip(i));
+            if (clips[i] == null) return null;
+
+            sampleRate = Math.max(sampleRate, clips[i].sampleRate);
+            channels = Math.max(channels, clips[i].channels);
+        }
+
+        // Part of each clip that is used, in frames of the clip
+        int[] starts = new int[count];
+        int[] ends = new int[count];
+
+        // Where each clip starts in the output and how many frames it fades in, in frames of the output
+        int[] positions = new int[count];
+        int[] fades = new int[count];
+
+        // Lay out the clips first, so that the output is allocated only once
+        int frames = 0;
+        int previousLength = 0;
+
+        for (int i = 0; i < count; i++) {
+            boolean spliceBefore = sequence.getCrossfadeBefore(i) > 0;
+            boolean spliceAfter = i + 1 < count && sequence.getCrossfadeBefore(i + 1) > 0;
+
+            starts[i] = spliceBefore ? findStart(clips[i]) : 0;
+            ends[i] = spliceAfter ? findEnd(clips[i]) : clips[i].getFrameCount();
+
+            // A clip that is silent throughout is kept as it is
+            if (ends[i] <= starts[i]) {
+                starts[i] = 0;
+                ends[i] = clips[i].getFrameCount();
+            }
+
+            int length = resampledFrames(ends[i] - starts[i], clips[i].sampleRate, sampleRate);
+
+            // The fade can't be longer than either of both clips
+            if (spliceBefore) {
+                fades[i] = Math.min(toFrames(sequence.getCrossfadeBefore(i), sampleRate),
+                        Math.min(length, previousLength));
+            }
+
+            positions[i] = frames + toFrames(sequence.getGapBefore(i), sampleRate) - fades[i];
+            frames = positions[i] + length;
+            previousLength = length;
+        }
+
+        // The array is already filled with silence, so a gap is only skipped
+        short[] output = new short[frames * channels];
+
+        for (int i = 0; i < count; i++) {
+            int fadeOut = i + 1 < count ? fades[i + 1] : 0;
+
+            write(clips[i], starts[i], ends[i], output, positions[i] * channels, sampleRate, channels,
+                    fades[i], fadeOut);
+        }
+
+        return new PcmClip(output, sampleRate, channels);
+    }
+
+    private static int toFrames(int milliseconds, int sampleRate) {
+        return (int) ((long) milliseconds * sampleRate / 1000);
+    }
+
+    private static int resampledFrames(int frames, int clipSampleRate, int sampleRate) {
+        return (int) ((long) frames * sampleRate / clipSampleRate);
+    }
+
+    /**
+     * @return first frame of the clip to be used at a splice, the sound with a short margin before it.
+     */
+    private static int findStart(PcmClip clip) {
+        int frames = clip.getFrameCount();
+        int frame = 0;
+
+        while (frame < frames && isSilent(clip, frame)) {
+            frame++;
+        }
+
+        if (frame == frames) return frames;
+
+        return Math.max(0, frame - toFrames(SPLICE_MARGIN_MS, clip.sampleRate));
+    }
+
+    /**
+     * @return frame right after the part of the clip to be used at a splice, the sound
+     * with a short margin after it.
+     */
+    private static int findEnd(PcmClip clip) {
+        int frame = clip.getFrameCount();
+
+        while (frame > 0 && isSilent(clip, frame - 1)) {
+            frame--;
+        }
+
+        if (frame == 0) return 0;
+
+        return Math.min(clip.getFrameCount(), frame + toFrames(SPLICE_MARGIN_MS, clip.sampleRate));
+    }
+
+    private static boolean isSilent(PcmClip clip, int frame) {
+        for (int channel = 0; channel < clip.channels; channel++) {
+            if (Math.abs(clip.samples[frame * clip.channels + channel]) > SILENCE_THRESHOLD) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Add the given part of the clip to the output at the given sample rate and channel
+     * count, with linear interpolation between the frames of the clip. The first and last
+     * frames are faded in and out, to overlap with the clips before and after it.
+     *
+     * @param start - first frame of the clip to be written.
+     * @param end - frame of the clip right after the last one to be written.
+     * @param position - in the output, as an index in its samples.
+     * @param fadeIn - number of output frames to fade in.
+     * @param fadeOut - number of output frames to fade out.
+     */
+    private static void write(PcmClip clip, int start, int end, short[] output, int position,
+                              int sampleRate, int channels, int fadeIn, int fadeOut) {
+        int frames = resampledFrames(end - start, clip.sampleRate, sampleRate);
+
+        for (int frame = 0; frame < frames; frame++) {
+            long sourcePosition = (long) frame * clip.sampleRate;
+            int index = start + (int) (sourcePosition / sampleRate);
+            float fraction = (sourcePosition % sampleRate) / (float) sampleRate;
+            int nextIndex = Math.min(index + 1, end - 1);
+
+            float gain = 1;
+            if (frame < fadeIn) gain = (float) frame / fadeIn;
+            if (frames - frame <= fadeOut) gain = Math.min(gain, (float) (frames - frame - 1) / fadeOut);
+
+            for (int channel = 0; channel < channels; channel++) {
+                // Mono clips are copied to all channels of the output
+                int sourceChannel = Math.min(channel, clip.channels - 1);
+
+                short current = clip.samples[index * clip.channels + sourceChannel];
+                short next = clip.samples[nextIndex * clip.channels + sourceChannel];
+
+                // Overlapping clips are added up
+                float sample = output[position] + (current + (next - current) * fraction) * gain;
+                output[position++] = clamp(sample);
+            }
+        }
+    }
+
+    private static short clamp(float sample) {
+        if (sample > Short.MAX_VALUE) return Short.MAX_VALUE;
+        if (sample < Short.MIN_VALUE) return Short.MIN_VALUE;
+
+        return (short) sample;
+    }
+}
@@ -0,0 +1,91 @@
+package com.alchemistmoz.balochi.misc;
+
+import android.content.Context;
+
+/**
+ * Runs the next step of a game once the sound it is waiting on has ended,
+ * whether the sound completed, failed or was interrupted.
+ *
+ * Only the latest request is waited on. The end of an older request is ignored,
+ * as is the end of any request after cancel() has been called.
+ *
+ * Use as follows:
+ * - Create one PlaybackWaiter per game.
+ *
+ * - Play the sound with play(context, audioResourceID, runnable), the runnable is run
+ *   on the main thread when the sound has ended.
+ *
+ * - Call cancel() when the game is finishing, i.e. in removePendingPosts().
+ */
+public class PlaybackWaiter extends SoundPlayback.OnPlaybackEndListener {
+
+    // Token of the request that is waited on, 0 if none
+    private int token;
+
+    // The step to run once the request has ended
+    private Runnable next;
+
+    /**
+     * Play the given sound and run next when it has ended.
+     *
+     * @param context of the activity.
+     * @param audioResourceId - resource to be played.
+     * @param next - to be run when the sound has ended.
+     */
+    public void play(Context context, int audioResourceId, Runnable next) {
+        this.next = next;
+        token = SoundPlayback.play(context, audioResourceId, this);
+    }
+
+    /**
+     * Play the clips of the given sequence as one sound and run next when it has ended.
+     *
+     * @param context of the activity.
+     * @param sequence - clips to be played.
+     * @param next - to be run when the sequence has ended.
+     */
+    public void play(Context context, SoundSequence sequence, Runnable next) {
+        this.next = next;
+        token = SoundPlayback.play(context, sequence, this);
+    }
+
+    /**
+     * @return true if the waiter is waiting on a sound to end.
+     */
+    public boolean isWaiting() {
+        return token != 0;
+    }
+
+    /**
+     * Stop the sound that is waited on and run next right away, as if the sound had ended.
+     */
+    public void skip() {
+        if (!isWaiting()) return;
+
+        Runnable step = next;
+        cancel();
+
+        SoundPlayback.stop();
+        step.run();
+    }
+
+    /**
+     * Forget about the request that is waited on, its end will be ignored.
+     */
+    public void cancel() {
+        token = 0;
+        next = null;
+    }
+
+    @Override
+    public void onPlaybackEnd(int token) {
+
+        // Ignore requests that are no longer waited on
+        if (token != this.token) return;
+
+        Runnable step = next;
+        cancel();
+
+        step.run();
+    }
+}
@@ -0,0 +1,494 @@
+package com.alchemistmoz.balochi.misc;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.util.SparseArray;
+import android.widget.ImageView;
+
+import com.alchemistmoz.balochi.BuildConfig;
+import com.alchemistmoz.balochi.R;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * A lightweight alternative to Glide for the images of the items, which are all bundled
+ * drawables. The images are decoded at the size of their cell and kept in memory,
+ * looked up by their resource ID without any key objects.
+ *
+ * Each cell size is a size class with its own images, in a SparseArray keyed by the
+ * resource ID. All images share one least recently used list and the byte budget of
+ * the memory cache of Glide, see ImageModule, so that both can be compared.
+ *
+ * The images that are shown are counted per view. An image that is evicted while it
+ * isn't shown becomes a free slot of its size class, the next image of the class is
+ * decoded into it with inBitmap instead of allocating a new bitmap. An image that is
+ * still shown becomes a slot once its view shows another image. Views that are gone,
+ * e.g. of an activity that was closed, never let go of their image, it is left to GC.
+ *
+ * The images are decoded on a small background pool and set on the main thread.
+ * All methods are to be called from the main thread.
+ *
+ * Use as follows:
+ * - Get the cache with ResourceBitmapCache.get(context) and a size class for the cells
+ *   with getSizeClass(width, height).
+ *
+ * - Call load(imageResourceID, imageView, sizeClass, listener) to show an image, and
+ *   preload(imageResourceID, sizeClass) to decode one ahead.
+ */
+public final class ResourceBitmapCache {
+
+    /**
+     * Listener for when the image of a view has been set.
+     */
+    public interface OnBitmapReadyListener {
+
+        /**
+         * @param bitmap - the image that was set.
+         * @param fromMemoryCache - true if it was in the cache, false if it was decoded.
+         */
+        void onBitmapReady(Bitmap bitmap, boolean fromMemoryCache);
+    }
+
+    /**
+     * The images that are decoded at one cell size.
+     */
+    public static final class SizeClass {
+
+        final int width;
+        final int height;
+
+        // Resource ID -> the image in the cache
+        private final SparseArray<Entry> entries = new SparseArray<>();
+
+        // Resource ID -> the views waiting for the image, while it is decoded
+        private final SparseArray<ArrayList<ViewTarget>> pendingDecodes = new SparseArray<>();
+
+        // Bitmaps that are no longer used, to be decoded into
+        private final ArrayDeque<Bitmap> freeSlots = new ArrayDeque<>();
+
+        private SizeClass(int width, int height) {
+            this.width = width;
+            this.height = height;
+        }
+    }
+
+    /**
+     * An image in the cache, linked into the least recently used list.
+     */
+    private static final class Entry {
+
+        final int imageResourceId;
+        final SizeClass sizeClass;
+        Bitmap bitmap;
+
+        // Number of views that show the image
+        int viewCount;
+
+        // True once the image has been removed from the cache
+        boolean evicted;
+
+        // Neighbours in the list, the previous one was used more recently
+        Entry previous;
+        Entry next;
+
+        Entry(int imageResourceId, SizeClass sizeClass, Bitmap bitmap) {
+            this.imageResourceId = imageResourceId;
+            this.sizeClass = sizeClass;
+            this.bitmap = bitmap;
+        }
+    }
+
+    /**
+     * The image that a view shows and the one it is waiting for. Kept as a tag of the view.
+     */
+    private static final class ViewTarget {
+
+        final ImageView view;
+
+        // The image that is shown, null if none
+        Entry entry;
+
+        // The image that is waited for, sizeClass is null if none
+        int pendingResourceId;
+        SizeClass pendingSizeClass;
+
+        OnBitmapReadyListener listener;
+
+        ViewTarget(ImageView view) {
+            this.view = view;
+        }
+    }
+
+    // Number of threads that decode the images
+    private static final int DECODE_THREADS = 2;
+
+    // Number of free slots that are kept per size class
+    private static final int MAX_FREE_SLOTS = 4;
+
+    private static final String TAG = "ResourceBitmapCache";
+
+    private static ResourceBitmapCache instance;
+
+    private final Resources resources;
+
+    private final SparseArray<SizeClass> sizeClasses = new SparseArray<>();
+
+    // Most and least recently used images
+    private Entry head;
+    private Entry tail;
+
+    private final int maxBytes;
+    private int currentBytes;
+
+    private final ExecutorService decodeExecutor = Executors.newFixedThreadPool(DECODE_THREADS);
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * Drop the images when the app is in the background and memory is needed.
+     */
+    private final ComponentCallbacks2 trimCallbacks = new ComponentCallbacks2() {
+        @Override
+        public void onTrimMemory(int level) {
+            if (level >= TRIM_MEMORY_BACKGROUND) evictAll();
+        }
+
+        @Override
+        public void onLowMemory() {
+            evictAll();
+        }
+
+        @Override
+        public void onConfigurationChanged(Configuration newConfig) {
+            // Empty
+        }
+    };
+
+    /**
+     * @param context of the application.
+     */
+    private ResourceBitmapCache(Context context) {
+        resources = context.getResources();
+
+        maxBytes = Utilities.getByteBudget(context, R.integer.image_memory_cache_kb_low_ram,
+                R.integer.image_memory_cache_kb_small, R.integer.image_memory_cache_kb_medium,
+                R.integer.image_memory_cache_kb_large);
+
+        context.registerComponentCallbacks(trimCallbacks);
+    }
+
+    /**
+     * @param context of the activity.
+     * @return the cache of the app.
+     */
+    public static ResourceBitmapCache get(Context context) {
+        if (instance == null) {
+            instance = new ResourceBitmapCache(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * @param width - of the images in pixels.
+     * @param height - of the images in pixels.
+     * @return the size class of the given size, the same one for each call.
+     */
+    public SizeClass getSizeClass(int width, int height) {
+
+        // The cells are far smaller than 65536 pixels
+        int key = (width << 16) | height;
+
+        SizeClass sizeClass = sizeClasses.get(key);
+
+        if (sizeClass == null) {
+            sizeClass = new SizeClass(width, height);
+            sizeClasses.put(key, sizeClass);
+        }
+        return sizeClass;
+    }
+
+    /**
+     * Show the given image in the view, from the cache or once it has been decoded.
+     * The view is empty while the image is decoded.
+     *
+     * @param imageResourceId - drawable resource of the image.
+     * @param imageView - to show the image in.
+     * @param sizeClass - size at which the image is decoded.
+     * @param listener - to be notified once the image has been set, may be null.
+     */
+    public void load(int imageResourceId, ImageView imageView, SizeClass sizeClass,
+                     OnBitmapReadyListener listener) {
+
+        ViewTarget target = (ViewTarget) imageView.getTag(R.id.resource_bitmap_target);
+
+        if (target == null) {
+            target = new ViewTarget(imageView);
+            imageView.setTag(R.id.resource_bitmap_target, target);
+        }
+
+        // The previous image of the view is no longer shown, nor waited for
+        Entry previous = target.entry;
+        target.entry = null;
+        target.pendingSizeClass = null;
+        target.listener = listener;
+
+        Entry entry = sizeClass.entries.get(imageResourceId);
+
+        if (entry != null) {
+            show(target, entry);
+            release(previous);
+
+            if (listener != null) listener.onBitmapReady(entry.bitmap, true);
+            return;
+        }
+
+        // Clear the view before its previous bitmap may be decoded into
+        imageView.setImageDrawable(null);
+        release(previous);
+
+        target.pendingResourceId = imageResourceId;
+        target.pendingSizeClass = sizeClass;
+
+        decode(imageResourceId, sizeClass).add(target);
+    }
+
+    /**
+     * Decode the given image ahead, without a view, unless it is already in the cache.
+     *
+     * @param imageResourceId - drawable resource of the image.
+     * @param sizeClass - size at which the image is decoded.
+     */
+    public void preload(int imageResourceId, SizeClass sizeClass) {
+        Entry entry = sizeClass.entries.get(imageResourceId);
+
+        if (entry != null) {
+            moveToHead(entry);
+        } else {
+            decode(imageResourceId, sizeClass);
+        }
+    }
+
+    /**
+     * Drop all images, those that are shown stay in their views.
+     */
+    public void evictAll() {
+        while (tail != null) {
+            evict(tail);
+        }
+
+        for (int i = 0; i < sizeClasses.size(); i++) {
+            sizeClasses.valueAt(i).freeSlots.clear();
+        }
+    }
+
+    /**
+     * Start decoding the image in the background, unless it is already being decoded.
+     *
+     * @return the list of views that wait for the image.
+     */
+    private ArrayList<ViewTarget> decode(final int imageResourceId, final SizeClass sizeClass) {
+        ArrayList<ViewTarget> waiting = sizeClass.pendingDecodes.get(imageResourceId);
+        if (waiting != null) return waiting;
+
+        waiting = new ArrayList<>();
+        sizeClass.pendingDecodes.put(imageResourceId, waiting);
+
+        final Bitmap slot = sizeClass.freeSlots.poll();
+
+        decodeExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final Bitmap bitmap = decodeBitmap(imageResourceId, sizeClass, slot);
+
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        onDecoded(imageResourceId, sizeClass, bitmap);
+                    }
+                });
+            }
+        });
+
+        return waiting;
+    }
+
+    /**
+     * Add the decoded image to the cache and show it in the views that still wait for it.
+     */
+    private void onDecoded(int imageResourceId, SizeClass sizeClass, Bitmap bitmap) {
+        ArrayList<ViewTarget> waiting = sizeClass.pendingDecodes.get(imageResourceId);
+        sizeClass.pendingDecodes.remove(imageResourceId);
+
+        if (bitmap == null) {
+            if (BuildConfig.DEBUG) Log.d(TAG, "Could not decode " + imageResourceId);
+            return;
+        }
+
+        Entry entry = new Entry(imageResourceId, sizeClass, bitmap);
+
+        sizeClass.entries.put(imageResourceId, entry);
+        currentBytes += bitmap.getAllocationByteCount();
+        moveToHead(entry);
+
+        if (waiting != null) {
+            for (ViewTarget target : waiting) {
+
+                // The view has moved on to another image meanwhile
+                if (target.pendingSizeClass != sizeClass || target.pendingResourceId != imageResourceId) continue;
+
+                target.pendingSizeClass = null;
+                show(target, entry);
+
+                if (target.listener != null) target.listener.onBitmapReady(bitmap, false);
+            }
+        }
+
+        trimToSize();
+    }
+
+    /**
+     * Decode the image in the calling thread, scaled to fit inside the cell of the size class.
+     *
+     * @param slot - bitmap to decode into, may be null.
+     * @return the decoded image, or null if it could not be decoded.
+     */
+    private Bitmap decodeBitmap(int imageResourceId, SizeClass sizeClass, Bitmap slot) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+
+        // Size of the image in the drawable folder, without scaling it to the screen density
+        options.inJustDecodeBounds = true;
+        options.inScaled = false;
+        BitmapFactory.decodeResource(resources, imageResourceId, options);
+
+        int sourceWidth = options.outWidth;
+        int sourceHeight = options.outHeight;
+        if (sourceWidth <= 0 || sourceHeight <= 0) return null;
+
+        // The image fits inside the cell and is never scaled up, as with centerInside
+        float scale = Math.min(1f, Math.min((float) sizeClass.width / sourceWidth,
+                (float) sizeClass.height / sourceHeight));
+        int targetWidth = Math.max(1, Math.round(sourceWidth * scale));
+        int targetHeight = Math.max(1, Math.round(sourceHeight * scale));
+
+        // Most of the way is skipped by sampling, the rest is scaled by the decoder
+        int sampleSize = 1;
+
+        while (sourceWidth / (sampleSize * 2) >= targetWidth && sourceHeight / (sampleSize * 2) >= targetHeight) {
+            sampleSize *= 2;
+        }
+
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = sampleSize;
+        options.inScaled = true;
+        options.inDensity = sourceWidth / sampleSize;
+        options.inTargetDensity = targetWidth;
+        options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+        options.inMutable = true;
+        options.inBitmap = slot;
+
+        Bitmap bitmap;
+
+        try {
+            bitmap = BitmapFactory.decodeResource(resources, imageResourceId, options);
+        } catch (IllegalArgumentException e) {
+
+            // The slot is too small for the image, decode it into a new bitmap
+            options.inBitmap = null;
+            bitmap = BitmapFactory.decodeResource(resources, imageResourceId, options);
+        }
+
+        // The pixels are the size of the image on the screen
+        if (bitmap != null) {
+            bitmap.setDensity(resources.getDisplayMetrics().densityDpi);
+        }
+        return bitmap;
+    }
+
+    /**
+     * Set the image of the entry in the view.
+     */
+    private void show(ViewTarget target, Entry entry) {
+        entry.viewCount++;
+        target.entry = entry;
+        target.view.setImageBitmap(entry.bitmap);
+
+        moveToHead(entry);
+    }
+
+    /**
+     * The image is shown in one view less, its bitmap becomes a free slot once it has
+     * been evicted and no view shows it anymore.
+     */
+    private void release(Entry entry) {
+        if (entry == null) return;
+
+        entry.viewCount--;
+
+        if (entry.evicted && entry.viewCount == 0) {
+            addFreeSlot(entry);
+        }
+    }
+
+    private void addFreeSlot(Entry entry) {
+        ArrayDeque<Bitmap> freeSlots = entry.sizeClass.freeSlots;
+
+        if (freeSlots.size() < MAX_FREE_SLOTS) {
+            freeSlots.add(entry.bitmap);
+        }
+        entry.bitmap = null;
+    }
+
+    /**
+     * Evict the least recently used images until the cache is within its budget.
+     */
+    private void trimToSize() {
+        while (currentBytes > maxBytes && tail != null) {
+            evict(tail);
+        }
+    }
+
+    private void evict(Entry entry) {
+        unlink(entry);
+
+        entry.sizeClass.entries.remove(entry.imageResourceId);
+        currentBytes -= entry.bitmap.getAllocationByteCount();
+        entry.evicted = true;
+
+        if (entry.viewCount == 0) {
+            addFreeSlot(entry);
+        }
+    }
+
+    private void moveToHead(Entry entry) {
+        if (entry == head) return;
+
+        unlink(entry);
+
+        entry.next = head;
+        if (head != null) head.previous = entry;
+        head = entry;
+
+        if (tail == null) tail = entry;
+    }
+
+    private void unlink(Entry entry) {
+        if (entry.previous != null) entry.previous.next = entry.next;
+        if (entry.next != null) entry.next.previous = entry.previous;
+
+        if (head == entry) head = entry.next;
+        if (tail == entry) tail = entry.previous;
+
+        entry.previous = null;
+        entry.next = null;
+    }
+}
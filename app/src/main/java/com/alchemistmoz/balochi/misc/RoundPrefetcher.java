@@ -0,0 +1,142 @@
+package com.alchemistmoz.balochi.misc;
+
+import android.content.Context;
+import android.os.Handler;
+import android.util.SparseBooleanArray;
+
+import java.util.ArrayList;
+
+/**
+ * Warms the caches for the next round of a game while the current round is played,
+ * so that the round transition shows its images and plays its sounds from memory.
+ *
+ * The images are decoded by the ItemImageLoader of the adapter, at the size of the cells,
+ * so they are found in the memory cache once the new items are bound. The sounds are
+ * decoded, and the sequences rendered, into the cache of SoundPlayback.
+ *
+ * The prefetch starts a moment after it has been scheduled, so that it doesn't hold up
+ * the images and the intro of the round that has just started.
+ *
+ * Use as follows:
+ * - Create one RoundPrefetcher per game and hand it the ItemImageLoader of the adapter
+ *   with useImageLoader(), i.e. in useAdapter().
+ *
+ * - Once the items of the next round are known, call clear(), add their images and
+ *   sounds and call schedule().
+ *
+ * - Call cancel() when the game is finishing, i.e. in removePendingPosts().
+ */
+public final class RoundPrefetcher {
+
+    // Delay in milliseconds before the prefetch starts, after the intro of the round has started
+    private static final int PREFETCH_DELAY = 1000;
+
+    private final Context context;
+
+    // Loads the images of the items, null until the adapter is known
+    private ItemImageLoader imageLoader;
+
+    // The images and sounds of the next round, the keys are the resource ID's
+    private final SparseBooleanArray images = new SparseBooleanArray();
+    private final SparseBooleanArray sounds = new SparseBooleanArray();
+    private final ArrayList<SoundSequence> sequences = new ArrayList<>();
+
+    // To be used for delaying the prefetch
+    private final Handler handler = new Handler();
+
+    private final Runnable prefetchRunnable = new Runnable() {
+        @Override
+        public void run() {
+            prefetch();
+        }
+    };
+
+    /**
+     * @param context of the activity.
+     */
+    public RoundPrefetcher(Context context) {
+        this.context = context;
+    }
+
+    /**
+     * @param imageLoader - of the adapter that shows the items.
+     */
+    public void useImageLoader(ItemImageLoader imageLoader) {
+        this.imageLoader = imageLoader;
+    }
+
+    /**
+     * Forget the images and sounds of the previous round, the prefetch that is
+     * scheduled is cancelled.
+     */
+    public void clear() {
+        cancel();
+
+        images.clear();
+        sounds.clear();
+        sequences.clear();
+    }
+
+    /**
+     * @param imageResourceId - image of an item of the next round.
+     * @return this prefetcher.
+     */
+    public RoundPrefetcher addImage(int imageResourceId) {
+        images.put(imageResourceId, true);
+        return this;
+    }
+
+    /**
+     * @param audioResourceId - sound that is played in the next round.
+     * @return this prefetcher.
+     */
+    public RoundPrefetcher addSound(int audioResourceId) {
+        sounds.put(audioResourceId, true);
+        return this;
+    }
+
+    /**
+     * @param sequence - sound that is played in the next round, it is rendered as it is now.
+     * @return this prefetcher.
+     */
+    public RoundPrefetcher addSequence(SoundSequence sequence) {
+        sequences.add(sequence);
+        return this;
+    }
+
+    /**
+     * Start the prefetch of the images and sounds that have been added, after a moment.
+     */
+    public void schedule() {
+        handler.removeCallbacks(prefetchRunnable);
+        handler.postDelayed(prefetchRunnable, PREFETCH_DELAY);
+    }
+
+    /**
+     * Cancel the prefetch that is scheduled, the decodes that have started are finished.
+     */
+    public void cancel() {
+        handler.removeCallbacks(prefetchRunnable);
+    }
+
+    /**
+     * Hand the images to the ItemImageLoader and the sounds to SoundPlayback.
+     * Both skip what is already in their cache.
+     */
+    private void prefetch() {
+
+        if (imageLoader != null) {
+            for (int i = 0; i < images.size(); i++) {
+                imageLoader.preload(images.keyAt(i));
+            }
+        }
+
+        for (int i = 0; i < sounds.size(); i++) {
+            SoundPlayback.prefetch(context, sounds.keyAt(i));
+        }
+
+        for (int i = 0; i < sequences.size(); i++) {
+            SoundPlayback.prefetch(context, sequences.get(i));
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.alchemistmoz.balochi.misc;
+
+import com.alchemistmoz.balochi.R;
+
+/**
+ * Groups of sound resources that belong to each category of the app.
+ *
+ * The groups are used by SoundPlayback.loadCategory() to keep the short clips of the
+ * current category decoded in memory, so that playback can start without delay.
+ *
+ * COMMON is always kept loaded, the other groups are swapped in and out as the user
+ * moves between the categories.
+ */
+public final class SoundBank {
+
+    // Menu and feedback sounds, used throughout the whole app
+    public static final int[] COMMON = {
+            R.raw.menu_numbers,
+            R.raw.menu_colors,
+            R.raw.menu_family,
+            R.raw.menu_fruitveggies,
+            R.raw.menu_repetition,
+            R.raw.menu_memory,
+            R.raw.celebration_short,
+            R.raw.correct_answer3,
+            R.raw.wrong_answer};
+
+    public static final int[] NUMBERS = {
+            R.raw.numbers_one,
+            R.raw.numbers_two,
+            R.raw.numbers_three,
+            R.raw.numbers_four,
+            R.raw.numbers_five,
+            R.raw.numbers_six,
+            R.raw.numbers_seven,
+            R.raw.numbers_eight,
+            R.raw.numbers_nine,
+            R.raw.numbers_ten,
+            R.raw.numbers_one_strawberry,
+            R.raw.numbers_two_carrots,
+            R.raw.numbers_three_lemons,
+            R.raw.numbers_four_mangos,
+            R.raw.numbers_five_oranges,
+            R.raw.numbers_six_apples,
+            R.raw.numbers_seven_tomatoes,
+            R.raw.numbers_eight_watermelons,
+            R.raw.numbers_nine_strawberries,
+            R.raw.numbers_ten_apples};
+
+    public static final int[] COLORS = {
+            R.raw.colors_black,
+            R.raw.colors_blue,
+            R.raw.colors_brown,
+            R.raw.colors_green,
+            R.raw.colors_grey,
+            R.raw.colors_orange,
+            R.raw.colors_red,
+            R.raw.colors_white,
+            R.raw.colors_yellow,
+            R.raw.colors_blue_flower,
+            R.raw.colors_green_broccoli,
+            R.raw.colors_orange_orange,
+            R.raw.colors_red_tomato,
+            R.raw.colors_yellow_banana,
+            R.raw.colors_intro_blackwhite,
+            R.raw.colors_intro_greybrown};
+
+    // The face games currently reuse the sounds of the colors
+    public static final int[] FACE = {
+            R.raw.colors_black,
+            R.raw.colors_blue,
+            R.raw.colors_brown,
+            R.raw.colors_green,
+            R.raw.colors_grey,
+            R.raw.colors_orange,
+            R.raw.colors_red,
+            R.raw.colors_white,
+            R.raw.colors_yellow};
+
+    public static final int[] FAMILY = {
+            R.raw.family_mother,
+            R.raw.family_father,
+            R.raw.family_sister,
+            R.raw.family_brother,
+            R.raw.family_grandmother,
+            R.raw.family_grandfather,
+            R.raw.family_aunt,
+            R.raw.family_uncle,
+            R.raw.family_intro_parents,
+            R.raw.family_intro_children,
+            R.raw.family_intro_mgrandparents,
+            R.raw.family_intro_pgrandparents,
+            R.raw.family_intro_msiblings,
+            R.raw.family_intro_psiblings};
+
+    public static final int[] FRUITVEGGIES = {
+            R.raw.fruitveggies_apple,
+            R.raw.fruitveggies_banana,
+            R.raw.fruitveggies_broccoli,
+            R.raw.fruitveggies_carrot,
+            R.raw.fruitveggies_mango,
+            R.raw.fruitveggies_orange,
+            R.raw.fruitveggies_tomato,
+            R.raw.fruitveggies_lemon,
+            R.raw.fruitveggies_strawberry,
+            R.raw.fruitveggies_watermelon,
+            R.raw.fruitveggies_intro_fruits,
+            R.raw.fruitveggies_intro_veggies};
+
+    /**
+     * Prevent user from instantiating the class.
+     */
+    private SoundBank() {
+        // Empty
+    }
+}
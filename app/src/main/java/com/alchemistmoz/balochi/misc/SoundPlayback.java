@@ -1,71 +1,242 @@
 package com.alchemistmoz.balochi.misc;
 
+import android.app.Activity;
+import android.app.Application;
 import android.content.Context;
 import android.media.AudioManager;
-import android.media.MediaPlayer;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.support.v7.app.AppCompatActivity;
+import android.util.SparseArray;
+
+import com.alchemistmoz.balochi.R;
 
 
 /**
  * Utility class for handling playback of sound files.
  *
  * Use as follows:
- * 1. Initialize AudioManager outside the clickListener with initializeManagerService(context),
+ * 1. Start the audio thread outside the clickListener with initializeManagerService(context),
  *    in onCreate() of the activity.
  *
  * 2. Play the desired sound within the onClick method with play(context, audioResourceID).
  *
- * Use releaseMediaPlayer within onStop() of game activities.
+ * Use stop() within onPause() of the activities. The players themselves are kept
+ * between the activities and only released once the app is no longer visible.
+ *
+ * Short clips of the current category can be kept decoded in memory with
+ * loadCategory(context, SoundBank.XXX) in onResume() of the category activity.
+ * play() will then start them from the low latency SoundPoolEngine, while all
+ * other clips are played from the MediaPlayerPool.
+ *
+ * The sounds are played on a dedicated audio thread by the AudioEngine, the main
+ * thread only queues the requests and never waits on the decoders.
+ *
+ * Feedback effects can be played on top of the current sound with playOverlay(), they
+ * are mixed with the sound instead of interrupting it.
+ *
+ * Game activities hold a session with startSession(activity) in onResume() and
+ * endSession() in onPause(), instead of stop(). The audio output is warmed up and the
+ * audio focus is held for the whole session, so that the first sound of the game is
+ * as quick as the rest.
+ *
+ * Background music can be looped softly under all other sounds, by naming a clip in
+ * res/raw with the background_music string resource, or at runtime with startMusic().
+ * It keeps playing between the activities and is ducked while the words are playing.
+ *
+ * In order to know when a sound has ended, pass an OnPlaybackListener to
+ * play(context, audioResourceID, listener). Each request returns a token, which is
+ * handed back to the listener together with the event that ended the request.
+ * Events are always delivered on the main thread, after play() has returned.
+ *
+ * In the press-to-play mode the games start the sound of an item with preview() as soon
+ * as it is pressed. When the press turns into a click, the game plays the same sound with
+ * play(), which takes over the preview instead of starting it again. A press that is
+ * cancelled stops its preview with cancelPreview().
+ *
+ * The time from a tap until its sound has started is measured by TapLatency, for the
+ * taps that are marked by the click listeners and the games.
+ *
+ * The sounds of the next round of a game can be decoded ahead with prefetch(), so that
+ * they start from memory like the sounds that have been played before.
  *
  */
 public final class SoundPlayback {
 
-    /** provides access to volume and ringer mode control. */
-    private static AudioManager audioManager;
+    /**
+     * Listener for the events that end a single playback request.
+     * Exactly one of the methods is called for each request.
+     */
+    public interface OnPlaybackListener {
 
-    /** Handles playback of all the sound files */
-    private static MediaPlayer mediaPlayer;
+        /** The sound was played to the end. */
+        void onCompletion(int token);
+
+        /** The sound could not be played, e.g. audio focus was denied. */
+        void onError(int token);
+
+        /** The sound was stopped by another request or by stop(). */
+        void onInterrupted(int token);
+    }
 
     /**
-     * The listener gets triggered when the mediaPlayer has completed
-     * playing the audio file.
+     * Convenience listener for when it only matters that the sound is over,
+     * no matter how it ended.
      */
-    private static MediaPlayer.OnCompletionListener completionListener = new MediaPlayer.OnCompletionListener() {
+    public abstract static class OnPlaybackEndListener implements OnPlaybackListener {
+
+        public abstract void onPlaybackEnd(int token);
+
+        @Override
+        public void onCompletion(int token) {
+            onPlaybackEnd(token);
+        }
+
+        @Override
+        public void onError(int token) {
+            onPlaybackEnd(token);
+        }
+
         @Override
-        public void onCompletion(MediaPlayer mediaPlayer) {
-            releaseMediaPlayer();
+        public void onInterrupted(int token) {
+            onPlaybackEnd(token);
+        }
+    }
+
+    // The events that end a playback request
+    static final int EVENT_COMPLETION = 0;
+    static final int EVENT_ERROR = 1;
+    static final int EVENT_INTERRUPTED = 2;
+
+    // Token to be handed out to the next request
+    private static int nextToken = 1;
+
+    // The request that is currently playing, 0 if none
+    private static int currentToken;
+    private static OnPlaybackListener currentListener;
+
+    // Overlays that are playing -> their listeners
+    private static SparseArray<OnPlaybackListener> overlayListeners = new SparseArray<>();
+
+    // The preview of a pressed item, 0 if none. Either a clip or the key of a sequence.
+    private static int previewToken;
+    private static int previewResourceId;
+    private static String previewSequenceKey;
+
+    // Whether the preview has already played to the end while the item is still pressed
+    private static boolean previewCompleted;
+
+    /**
+     * Keeps track of the end of the preview, until a game takes it over with play().
+     */
+    private static OnPlaybackListener previewListener = new OnPlaybackListener() {
+        @Override
+        public void onCompletion(int token) {
+            if (token == previewToken) previewCompleted = true;
+        }
+
+        @Override
+        public void onError(int token) {
+            if (token == previewToken) clearPreview();
+        }
+
+        @Override
+        public void onInterrupted(int token) {
+            if (token == previewToken) clearPreview();
         }
     };
 
+    /** Plays the sounds on the audio thread */
+    private static AudioEngine audioEngine;
+
+    // Number of activities of the app that are currently started, i.e. visible
+    private static int startedActivities;
+
+    // The background music, 0 if none
+    private static int musicResourceId;
+
+    // Used to deliver the interruption events
+    private static Handler handler = new Handler(Looper.getMainLooper());
+
     /**
-     * This listener gets triggered whenever the audio focus changes
-     * (i.e., we gain or lose audio focus because of another app or device).
+     * Receives the end of the requests from the audioEngine. Requests that have
+     * already been interrupted on the main thread are ignored.
      */
-    private static AudioManager.OnAudioFocusChangeListener audioFocusChangeListener = new AudioManager.OnAudioFocusChangeListener() {
+    private static AudioEngine.OnRequestEndListener requestEndListener = new AudioEngine.OnRequestEndListener() {
         @Override
-        public void onAudioFocusChange(int focusChange) {
-            if (focusChange == AudioManager.AUDIOFOCUS_LOSS_TRANSIENT ||
-                    focusChange == AudioManager.AUDIOFOCUS_LOSS_TRANSIENT_CAN_DUCK) {
-                // The AUDIOFOCUS_LOSS_TRANSIENT case means that we've lost audio focus for a
-                // short amount of time. The AUDIOFOCUS_LOSS_TRANSIENT_CAN_DUCK case means that
-                // our app is allowed to continue playing sound but at a lower volume. We'll treat
-                // both cases the same way because our app is playing short sound files.
-
-                // Pause playback and reset player to the start of the file. That way, we can
-                // play the word from the beginning when we resume playback.
-                mediaPlayer.pause();
-                mediaPlayer.seekTo(0);
-            } else if (focusChange == AudioManager.AUDIOFOCUS_LOSS) {
-                // The AUDIOFOCUS_LOSS case means we've lost audio focus
-                // Stop playback and clean up resources
-                releaseMediaPlayer();
-            } else if (focusChange == AudioManager.AUDIOFOCUS_GAIN) {
-                // The AUDIOFOCUS_GAIN case means we have regained focus and can resume playback.
-                mediaPlayer.start();
+        public void onRequestEnd(int token, int event) {
+            if (token == currentToken) {
+                OnPlaybackListener listener = currentListener;
+                clearCurrentRequest();
+
+                notifyListener(listener, token, event);
+
+            } else if (overlayListeners.indexOfKey(token) >= 0) {
+                OnPlaybackListener listener = overlayListeners.get(token);
+                overlayListeners.remove(token);
+
+                notifyListener(listener, token, event);
             }
         }
     };
 
+    /**
+     * Keeps track of whether the app is visible. The players are released when the
+     * last activity of the app is stopped, rather than in onPause() of each activity,
+     * so that they survive the transitions between the activities.
+     */
+    private static Application.ActivityLifecycleCallbacks lifecycleCallbacks = new Application.ActivityLifecycleCallbacks() {
+        @Override
+        public void onActivityStarted(Activity activity) {
+            startedActivities++;
+
+            // The app has become visible, continue the music where it was paused
+            if (startedActivities == 1 && musicResourceId != 0) {
+                audioEngine.startMusic(musicResourceId);
+            }
+        }
+
+        @Override
+        public void onActivityStopped(Activity activity) {
+            startedActivities--;
+
+            if (startedActivities <= 0) {
+                startedActivities = 0;
+                release();
+
+                // Keep the measured tap latencies where they can be read with adb
+                TapLatency.export(activity.getApplicationContext());
+            }
+        }
+
+        @Override
+        public void onActivityCreated(Activity activity, Bundle savedInstanceState) {
+            // Empty
+        }
+
+        @Override
+        public void onActivityResumed(Activity activity) {
+            // Taps are counted for the activity that is in front
+            TapLatency.setActivity(activity);
+        }
+
+        @Override
+        public void onActivityPaused(Activity activity) {
+            // Empty
+        }
+
+        @Override
+        public void onActivitySaveInstanceState(Activity activity, Bundle outState) {
+            // Empty
+        }
+
+        @Override
+        public void onActivityDestroyed(Activity activity) {
+            // Empty
+        }
+    };
+
 
     /**
      * Prevent user from instantiating the class.
@@ -75,17 +246,115 @@ public final class SoundPlayback {
     }
 
     /**
-     * Create and setup the Audio Manager to request audio focus and set to music stream.
+     * Start the audio thread and set the activity to the music stream.
      * @param activity where the sound will be played.
      */
     public static void initializeManagerService(AppCompatActivity activity) {
-        Context context = activity.getApplicationContext();
-        audioManager = (AudioManager) context.getSystemService(Context.AUDIO_SERVICE);
+
+        // The audio thread is started once and then kept for the lifetime of the app
+        if (audioEngine == null) {
+            audioEngine = new AudioEngine(activity.getApplicationContext(), requestEndListener);
+            musicResourceId = getMusicResourceId(activity);
+
+            // The activity is not started yet, so it is counted by the callbacks as well
+            activity.getApplication().registerActivityLifecycleCallbacks(lifecycleCallbacks);
+        }
 
         // Set the stream to music so that volume controls modify media volume
         activity.setVolumeControlStream(AudioManager.STREAM_MUSIC);
     }
 
+    /**
+     * @param context of the activity.
+     * @return the clip that is named by the background_music string resource, 0 if none.
+     */
+    private static int getMusicResourceId(Context context) {
+        String name = context.getString(R.string.background_music);
+        if (name.isEmpty()) return 0;
+
+        return context.getResources().getIdentifier(name, "raw", context.getPackageName());
+    }
+
+    /**
+     * Loop the given clip as background music while the app is visible, instead of the
+     * one from the background_music string resource. The music is ducked while the other
+     * sounds are playing.
+     *
+     * @param context of the activity.
+     * @param audioResourceId - short clip to be looped.
+     */
+    public static void startMusic(Context context, int audioResourceId) {
+        musicResourceId = audioResourceId;
+
+        if (startedActivities > 0) {
+            audioEngine.startMusic(audioResourceId);
+        }
+    }
+
+    /**
+     * Stop the background music until the next startMusic().
+     */
+    public static void stopMusic() {
+        musicResourceId = 0;
+
+        if (audioEngine != null) {
+            audioEngine.stopMusic();
+        }
+    }
+
+    /**
+     * Warm up the audio output and hold the audio focus until endSession(), rather than
+     * requesting it for every sound. Call in onResume() of the game activity, after
+     * initializeManagerService().
+     *
+     * The warm-up can be turned off with the audio_warm_up bool resource, e.g. to compare
+     * the latencies that are logged for each session in debug builds.
+     *
+     * @param activity that holds the session.
+     */
+    public static void startSession(Activity activity) {
+        boolean warmUp = activity.getResources().getBoolean(R.bool.audio_warm_up);
+
+        audioEngine.startSession(activity.getClass().getName(), warmUp);
+    }
+
+    /**
+     * Stop the sounds like stop() and let go of the audio focus and the audio output of
+     * the session. Call in onPause() of the game activity.
+     */
+    public static void endSession() {
+        interruptCurrentRequest();
+        interruptOverlays();
+
+        if (audioEngine != null) {
+            audioEngine.endSession();
+        }
+    }
+
+    /**
+     * Keep the short clips of the given category decoded in memory, together with
+     * the COMMON clips. The compressed bytes of all clips of the category are read in
+     * bulk as well, so that the players don't go back to the APK for each clip.
+     * The clips of the previous category are unloaded.
+     *
+     * Call in onResume() of the category activity, after initializeManagerService().
+     *
+     * @param context of the activity.
+     * @param category - clips of the category, e.g. SoundBank.FAMILY.
+     */
+    public static void loadCategory(Context context, int[] category) {
+        audioEngine.loadCategory(category);
+    }
+
+    /**
+     * Unload the clips of the current category, only the COMMON clips are kept.
+     *
+     * @param context of the activity.
+     */
+    public static void unloadCategory(Context context) {
+        audioEngine.loadCategory(SoundBank.COMMON);
+    }
+
     /**
      * Simple way to playback sound from other activities.
      *
@@ -93,70 +362,285 @@ public final class SoundPlayback {
      * @param audioResourceId - resource to be played.
      */
     public static void play(Context context, int audioResourceId) {
-        releaseMediaPlayer();
-        playSound(context, audioResourceId);
+        play(context, audioResourceId, null);
     }
 
     /**
-     * @return duration of sound in milliseconds.
+     * Play the given sound and report to the listener how the playback ended.
+     * A sound that is already playing is interrupted.
+     *
+     * The request is only queued on the audio thread, so play() returns right away.
+     * If the sound can't be played, the listener is notified with onError().
+     *
+     * @param context of the activity.
+     * @param audioResourceId - resource to be played.
+     * @param listener - to be notified when the sound has ended, may be null.
+     * @return token that identifies this request in the listener callbacks.
      */
-    public static int getSoundDuration() {
-        if (mediaPlayer != null) {
-            return mediaPlayer.getDuration();
-        } else {
+    public static int play(Context context, int audioResourceId, OnPlaybackListener listener) {
+        // The item was pressed before it was clicked, so its sound is already playing
+        int previewed = takeOverPreview(audioResourceId, null, listener);
+        if (previewed != 0) return previewed;
+
+        interruptCurrentRequest();
+
+        int token = nextToken++;
+
+        currentToken = token;
+        currentListener = listener;
+
+        // The audio thread stops the previous sound before it starts this one
+        audioEngine.play(token, audioResourceId, TapLatency.takeTrace());
+
+        return token;
+    }
+
+    /**
+     * Play the clips of the given sequence back to back, without gaps other than the
+     * ones in the sequence, and report to the listener once the last clip has ended.
+     * A sound that is already playing is interrupted.
+     *
+     * @param context of the activity.
+     * @param sequence - clips to be played.
+     * @param listener - to be notified when the sequence has ended, may be null.
+     * @return token that identifies this request in the listener callbacks.
+     */
+    public static int play(Context context, SoundSequence sequence, OnPlaybackListener listener) {
+        int previewed = takeOverPreview(0, sequence.getKey(), listener);
+        if (previewed != 0) return previewed;
+
+        interruptCurrentRequest();
+
+        int token = nextToken++;
+
+        currentToken = token;
+        currentListener = listener;
+
+        audioEngine.playSequence(token, sequence.copy(), TapLatency.takeTrace());
+
+        return token;
+    }
+
+    /**
+     * Start the sound of an item that is pressed, before it is clicked. The game state is
+     * left alone, the click plays the same sound with play() and takes over the preview.
+     *
+     * @param context of the activity.
+     * @param audioResourceId - resource to be played.
+     */
+    public static void preview(Context context, int audioResourceId) {
+        play(context, audioResourceId, previewListener);
+
+        previewToken = currentToken;
+        previewResourceId = audioResourceId;
+    }
+
+    /**
+     * Same as above, for an item whose sound is a sequence.
+     *
+     * @param context of the activity.
+     * @param sequence - clips to be played.
+     */
+    public static void preview(Context context, SoundSequence sequence) {
+        play(context, sequence, previewListener);
+
+        previewToken = currentToken;
+        previewSequenceKey = sequence.getKey();
+    }
+
+    /**
+     * Stop the preview of an item that was pressed but not clicked, e.g. when the finger
+     * was moved off the item. Nothing happens if the preview has been taken over.
+     */
+    public static void cancelPreview() {
+        if (previewToken == 0) return;
+
+        boolean playing = previewToken == currentToken;
+        clearPreview();
+
+        if (playing) stop();
+    }
+
+    /**
+     * Hand the preview over to the given listener, if it plays the same sound and is still
+     * the current request. A preview that has already completed is reported as completed
+     * right away.
+     *
+     * @param audioResourceId - clip that is to be played, 0 for a sequence.
+     * @param sequenceKey - key of the sequence that is to be played, null for a clip.
+     * @return token of the preview, 0 if there is no preview of the sound.
+     */
+    private static int takeOverPreview(int audioResourceId, String sequenceKey, OnPlaybackListener listener) {
+        // A preview that was interrupted can't be taken over, the sound is started again
+        boolean alive = previewToken == currentToken || previewCompleted;
+
+        if (previewToken == 0 || !alive || listener == previewListener || audioResourceId != previewResourceId ||
+                (sequenceKey == null ? previewSequenceKey != null : !sequenceKey.equals(previewSequenceKey))) {
+            clearPreview();
             return 0;
         }
+
+        int token = previewToken;
+        boolean completed = previewCompleted;
+        clearPreview();
+
+        // The latency was counted from the press, the click doesn't start a sound
+        TapLatency.takeTrace();
+
+        if (completed) {
+            dispatch(listener, token, EVENT_COMPLETION);
+        } else {
+            currentListener = listener;
+        }
+        return token;
     }
 
-    /** Clean up the media player by releasing its resources */
-    public static void releaseMediaPlayer() {
-        // If the media player is not null, then it may be currently playing a sound.
-        if (mediaPlayer != null) {
+    private static void clearPreview() {
+        previewToken = 0;
+        previewResourceId = 0;
+        previewSequenceKey = null;
+        previewCompleted = false;
+    }
 
-            // Stop any media and send the MediaPlayer instance back to the idle state.
-            // Exactly in the same state as when it was created.
-            mediaPlayer.reset();
+    /**
+     * Simple way to play a feedback effect on top of the current sound.
+     *
+     * @param context of the activity.
+     * @param audioResourceId - resource to be played.
+     */
+    public static void playOverlay(Context context, int audioResourceId) {
+        playOverlay(context, audioResourceId, null);
+    }
 
-            // Regardless of the current state of the media player, release its resources
-            // because we no longer need it.
-            mediaPlayer.release();
+    /**
+     * Play the given sound on top of the current sound, e.g. a celebration under the last
+     * word of a level. Unlike play(), the current sound is not interrupted, nor is the
+     * overlay interrupted by the next call to play(). Only stop() stops the overlays.
+     *
+     * @param context of the activity.
+     * @param audioResourceId - resource to be played.
+     * @param listener - to be notified when the sound has ended, may be null.
+     * @return token that identifies this request in the listener callbacks.
+     */
+    public static int playOverlay(Context context, int audioResourceId, OnPlaybackListener listener) {
+        int token = nextToken++;
 
-            // Set the media player back to null. For our code, we've decided that
-            // setting the media player to null is an easy way to tell that the media player
-            // is not configured to play an audio file at the moment. This makes the remainder
-            // of the object is a candidate for garbage collection.
-            mediaPlayer = null;
+        overlayListeners.put(token, listener);
+        audioEngine.playOverlay(token, audioResourceId);
 
-            // Regardless of whether or not we were granted audio focus, abandon it. This also
-            // unregisters the AudioFocusChangeListener so we don't get anymore callbacks.
-            audioManager.abandonAudioFocus(audioFocusChangeListener);
-        }
+        return token;
+    }
+
+    /**
+     * Decode the given clip in the background, so that it starts from memory once it is
+     * played, e.g. a sound of the next round of a game. Nothing is played.
+     *
+     * @param context of the activity.
+     * @param audioResourceId - resource to be decoded.
+     */
+    public static void prefetch(Context context, int audioResourceId) {
+        audioEngine.prefetch(audioResourceId);
     }
 
     /**
-     * Request audiofocus and initiate playback of the given sound.
+     * Same as above, the sequence is rendered as it will be played.
      *
      * @param context of the activity.
-     * @param audioResourceID - resource to be played.
+     * @param sequence - clips to be rendered.
+     */
+    public static void prefetch(Context context, SoundSequence sequence) {
+        audioEngine.prefetchSequence(sequence.copy());
+    }
+
+    /**
+     * The duration is known from the AudioIndex that is generated at build time,
+     * so it can be used to plan ahead before the sound is played.
+     *
+     * @param audioResourceId - resource to look up.
+     * @return duration of the given sound in milliseconds, 0 if unknown.
+     */
+    public static int getDuration(int audioResourceId) {
+        return AudioIndex.getDuration(audioResourceId);
+    }
+
+    /**
+     * Stop the sound that is currently playing and all overlays, their listeners are
+     * notified that they were interrupted. The players are kept for the next request.
      */
-    private static void playSound(Context context, int audioResourceID) {
-        // Request audio focus in order to play the audio file. The app needs to play a
-        // short audio file, so we will request audio focus with a short amount of time
-        // with AUDIOFOCUS_GAIN_TRANSIENT.
-        int result =  audioManager.requestAudioFocus(audioFocusChangeListener,
-                AudioManager.STREAM_MUSIC, AudioManager.AUDIOFOCUS_GAIN_TRANSIENT);
+    public static void stop() {
+        interruptCurrentRequest();
+        interruptOverlays();
 
-        if (result == AudioManager.AUDIOFOCUS_REQUEST_GRANTED) {
-            // Using the factory method create() we set the audio resource to be played when
-            // chosen category is selected.
-            mediaPlayer = MediaPlayer.create(context, audioResourceID);
+        if (audioEngine != null) {
+            audioEngine.stop();
+        }
+    }
 
-            // Stat playback of audio
-            mediaPlayer.start();
+    /**
+     * Stop the sound that is currently playing and release the native players.
+     * The background music is paused. Called automatically once the last activity
+     * of the app has been stopped.
+     */
+    public static void release() {
+        interruptCurrentRequest();
+        interruptOverlays();
 
-            // Listen for when the playback has finished
-            mediaPlayer.setOnCompletionListener(completionListener);
+        if (audioEngine != null) {
+            audioEngine.release();
+        }
+    }
 
+    /**
+     * Notify the listener of the current request that it was interrupted. The end
+     * that is reported later on by the audioEngine is then ignored.
+     *
+     * A preview that is interrupted is forgotten right away rather than once the event
+     * has been posted, so that a click in between doesn't take over a sound that is gone.
+     */
+    private static void interruptCurrentRequest() {
+        if (currentToken != 0) {
+            if (previewToken == currentToken) clearPreview();
+
+            dispatch(currentListener, currentToken, EVENT_INTERRUPTED);
+            clearCurrentRequest();
+        }
+    }
+
+    private static void interruptOverlays() {
+        for (int i = 0; i < overlayListeners.size(); i++) {
+            dispatch(overlayListeners.valueAt(i), overlayListeners.keyAt(i), EVENT_INTERRUPTED);
+        }
+        overlayListeners.clear();
+    }
+
+    private static void clearCurrentRequest() {
+        currentToken = 0;
+        currentListener = null;
+    }
+
+    /**
+     * Post the event to the listener, so that it is never called from within play().
+     */
+    private static void dispatch(final OnPlaybackListener listener, final int token, final int event) {
+        if (listener == null) return;
+
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                notifyListener(listener, token, event);
+            }
+        });
+    }
+
+    private static void notifyListener(OnPlaybackListener listener, int token, int event) {
+        if (listener == null) return;
+
+        if (event == EVENT_COMPLETION) {
+            listener.onCompletion(token);
+        } else if (event == EVENT_ERROR) {
+            listener.onError(token);
+        } else {
+            listener.onInterrupted(token);
         }
     }
 
@@ -0,0 +1,181 @@
+package com.alchemistmoz.balochi.misc;
+
+import android.content.Context;
+import android.media.AudioAttributes;
+import android.media.AudioManager;
+import android.media.SoundPool;
+import android.os.Build;
+import android.util.SparseBooleanArray;
+import android.util.SparseIntArray;
+
+/**
+ * Low latency playback engine used by SoundPlayback for short clips.
+ *
+ * The clips of the current category are decoded into a SoundPool when the category
+ * is entered, so that a later play() only has to start an already decoded sample.
+ * Clips that are longer than MAX_CLIP_DURATION are never kept in the pool, they
+ * are left to the MediaPlayer in SoundPlayback instead.
+ *
+ * All methods are to be called from the audio thread of the AudioEngine, which
+ * also receives the callbacks of the engine.
+ */
+final class SoundPoolEngine {
+
+    // Longest clip in milliseconds that will be kept decoded in the pool
+    private static final int MAX_CLIP_DURATION = 5000;
+
+    // Only one word is played at a time, the second stream allows for a short overlap
+    private static final int MAX_STREAMS = 2;
+
+    private final SoundPool soundPool;
+
+    // Audio resource ID -> sound ID of the loaded sample in the pool
+    private final SparseIntArray soundIds = new SparseIntArray();
+
+    // Sound ID's that SoundPool has finished decoding
+    private final SparseBooleanArray decodedSounds = new SparseBooleanArray();
+
+    // Stream of the sample that is currently playing, 0 if none
+    private int currentStreamId;
+
+    SoundPoolEngine() {
+        soundPool = createSoundPool();
+
+        soundPool.setOnLoadCompleteListener(new SoundPool.OnLoadCompleteListener() {
+            @Override
+            public void onLoadComplete(SoundPool pool, int sampleId, int status) {
+                if (status == 0) {
+                    decodedSounds.put(sampleId, true);
+                }
+            }
+        });
+    }
+
+    /**
+     * SoundPool.Builder only exists from Lollipop, use the old constructor below that.
+     */
+    @SuppressWarnings("deprecation")
+    private static SoundPool createSoundPool() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            AudioAttributes attributes = new AudioAttributes.Builder()
+                    .setUsage(AudioAttributes.USAGE_GAME)
+                    .setContentType(AudioAttributes.CONTENT_TYPE_SPEECH)
+                    .build();
+
+            return new SoundPool.Builder()
+                    .setMaxStreams(MAX_STREAMS)
+                    .setAudioAttributes(attributes)
+                    .build();
+        } else {
+            return new SoundPool(MAX_STREAMS, AudioManager.STREAM_MUSIC, 0);
+        }
+    }
+
+    /**
+     * Make sure that exactly the given clips and the COMMON clips are loaded.
+     * Samples of the previous category that are no longer needed are unloaded.
+     *
+     * @param context of the activity.
+     * @param category - audio resource ID's of the category, e.g. SoundBank.FAMILY.
+     */
+    void loadCategory(Context context, int[] category) {
+
+        // Unload the samples that are not part of the new category
+        for (int i = soundIds.size() - 1; i >= 0; i--) {
+            int audioResourceId = soundIds.keyAt(i);
+
+            if (!contains(SoundBank.COMMON, audioResourceId) && !contains(category, audioResourceId)) {
+                unload(audioResourceId);
+            }
+        }
+
+        load(context, SoundBank.COMMON);
+        load(context, category);
+    }
+
+    /**
+     * Load the given clips into the pool, unless they are already loaded or too long.
+     */
+    private void load(Context context, int[] clips) {
+        for (int audioResourceId : clips) {
+            if (soundIds.indexOfKey(audioResourceId) < 0 && isShortClip(audioResourceId)) {
+                soundIds.put(audioResourceId, soundPool.load(context, audioResourceId, 1));
+            }
+        }
+    }
+
+    /**
+     * Remove the given clip from the pool.
+     */
+    private void unload(int audioResourceId) {
+        int soundId = soundIds.get(audioResourceId);
+
+        soundPool.unload(soundId);
+
+        soundIds.delete(audioResourceId);
+        decodedSounds.delete(soundId);
+    }
+
+    /**
+     * SoundPool has no way of telling the length of a sample, which the games need in
+     * order to know when a sound is finished. The durations are known from the AudioIndex.
+     *
+     * @return true if the clip has a known duration that is short enough for the pool.
+     */
+    private static boolean isShortClip(int audioResourceId) {
+        int duration = AudioIndex.getDuration(audioResourceId);
+
+        return duration > 0 && duration <= MAX_CLIP_DURATION;
+    }
+
+    /**
+     * @return true if the clip is decoded in the pool and can be played right away.
+     */
+    boolean isReady(int audioResourceId) {
+        int soundId = soundIds.get(audioResourceId);
+
+        return soundId != 0 && decodedSounds.get(soundId);
+    }
+
+    /**
+     * Start playback of a clip that isReady(), stopping the previous clip.
+     *
+     * @return true if playback was started.
+     */
+    boolean play(int audioResourceId) {
+        stop();
+
+        currentStreamId = soundPool.play(soundIds.get(audioResourceId), 1f, 1f, 1, 0, 1f);
+
+        return currentStreamId != 0;
+    }
+
+    void pause() {
+        if (currentStreamId != 0) {
+            soundPool.pause(currentStreamId);
+        }
+    }
+
+    void resume() {
+        if (currentStreamId != 0) {
+            soundPool.resume(currentStreamId);
+        }
+    }
+
+    /**
+     * Stop the clip that is currently playing, if any.
+     */
+    void stop() {
+        if (currentStreamId != 0) {
+            soundPool.stop(currentStreamId);
+            currentStreamId = 0;
+        }
+    }
+
+    private static boolean contains(int[] clips, int audioResourceId) {
+        for (int clip : clips) {
+            if (clip == audioResourceId) return true;
+        }
+        return false;
+    }
+}
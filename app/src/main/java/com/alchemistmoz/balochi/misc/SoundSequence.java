@@ -0,0 +1,174 @@
+package com.alchemistmoz.balochi.misc;
+
+import java.util.Arrays;
+
+/**
+ * A list of clips, with optional gaps of silence in between, that is played back to back
+ * as one sound with SoundPlayback.play(context, sequence, listener). The listener is
+ * notified once, when the last clip has ended.
+ *
+ * Use as follows:
+ *     SoundSequence sequence = new SoundSequence()
+ *             .add(R.raw.correct_answer3)
+ *             .addGap(150)
+ *             .add(R.raw.family_mother);
+ *
+ * Words can also be spliced into a single utterance with a crossfade, e.g. a number
+ * and a noun. The silence at the joint is trimmed and the words overlap:
+ *     SoundSequence sequence = new SoundSequence()
+ *             .add(R.raw.numbers_two)
+ *             .addCrossfade(40)
+ *             .add(R.raw.fruitveggies_carrot);
+ *
+ * The rendered sequences are cached, so a sequence that is played again is not rendered again.
+ */
+public final class SoundSequence {
+
+    // Audio resource ID's of the clips, in the order they are played
+    private int[] clips = new int[4];
+
+    // Milliseconds of silence before each clip
+    private int[] gaps = new int[4];
+
+    // Milliseconds that each clip overlaps the one before it
+    private int[] crossfades = new int[4];
+
+    private int size;
+
+    // Silence or crossfade to be put before the next clip that is added
+    private int pendingGap;
+    private int pendingCrossfade;
+
+    /**
+     * Append a clip to the sequence.
+     *
+     * @param audioResourceId - resource to be played.
+     * @return this sequence.
+     */
+    public SoundSequence add(int audioResourceId) {
+        if (size == clips.length) {
+            clips = Arrays.copyOf(clips, size * 2);
+            gaps = Arrays.copyOf(gaps, size * 2);
+            crossfades = Arrays.copyOf(crossfades, size * 2);
+        }
+
+        clips[size] = audioResourceId;
+        gaps[size] = pendingGap;
+        crossfades[size] = pendingCrossfade;
+        size++;
+
+        pendingGap = 0;
+        pendingCrossfade = 0;
+        return this;
+    }
+
+    /**
+     * Append silence before the next clip. A gap at the end of the sequence is ignored.
+     *
+     * @param milliseconds - of silence.
+     * @return this sequence.
+     */
+    public SoundSequence addGap(int milliseconds) {
+        pendingGap += Math.max(0, milliseconds);
+        return this;
+    }
+
+    /**
+     * Splice the next clip onto the previous one: the silence at the end of the previous
+     * clip and at the start of the next one is trimmed, and both overlap with a crossfade.
+     * A crossfade replaces the gap before the clip. It is ignored for the first clip.
+     *
+     * @param milliseconds - that the clips overlap.
+     * @return this sequence.
+     */
+    public SoundSequence addCrossfade(int milliseconds) {
+        pendingCrossfade = Math.max(0, milliseconds);
+        pendingGap = 0;
+        return this;
+    }
+
+    /**
+     * @return number of clips in the sequence.
+     */
+    public int size() {
+        return size;
+    }
+
+    int getClip(int index) {
+        return clips[index];
+    }
+
+    int getGapBefore(int index) {
+        return gaps[index];
+    }
+
+    int getCrossfadeBefore(int index) {
+        return index > 0 ? crossfades[index] : 0;
+    }
+
+    /**
+     * @return key of the rendered sequence in the PcmCache, equal for equal sequences.
+     */
+    String getKey() {
+        StringBuilder key = new StringBuilder("sequence");
+
+        for (int i = 0; i < size; i++) {
+            key.append(':').append(clips[i])
+                    .append('/').append(gaps[i])
+                    .append('/').append(getCrossfadeBefore(i));
+        }
+        return key.toString();
+    }
+
+    /**
+     * Sequences are equal if they play the same clips with the same gaps and crossfades,
+     * i.e. if they are rendered the same.
+     */
+    @Override
+    public boolean equals(Object object) {
+        if (this == object) return true;
+        if (!(object instanceof SoundSequence)) return false;
+
+        SoundSequence other = (SoundSequence) object;
+        if (size != other.size) return false;
+
+        for (int i = 0; i < size; i++) {
+            if (clips[i] != other.clips[i] || gaps[i] != other.gaps[i] ||
+                    getCrossfadeBefore(i) != other.getCrossfadeBefore(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = size;
+
+        for (int i = 0; i < size; i++) {
+            hash = 31 * hash + clips[i];
+            hash = 31 * hash + gaps[i];
+            hash = 31 * hash + getCrossfadeBefore(i);
+        }
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return getKey();
+    }
+
+    /**
+     * @return a copy of the sequence, so that it can be handed to the audio thread.
+     */
+    SoundSequence copy() {
+        SoundSequence copy = new SoundSequence();
+
+        copy.clips = Arrays.copyOf(clips, Math.max(size, 1));
+        copy.gaps = Arrays.copyOf(gaps, Math.max(size, 1));
+        copy.crossfades = Arrays.copyOf(crossfades, Math.max(size, 1));
+        copy.size = size;
+
+        return copy;
+    }
+}
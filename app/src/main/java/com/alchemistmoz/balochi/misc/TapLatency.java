@@ -0,0 +1,284 @@
+package com.alchemistmoz.balochi.misc;
+
+import android.app.Activity;
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.JsonWriter;
+import android.util.Log;
+
+import com.alchemistmoz.balochi.BuildConfig;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Measures the time from a tap until the sound that it triggers has started, per activity.
+ *
+ * The time is split up into the stages that a tap goes through:
+ * - tap: the click listener of ItemClickSupport, or the touch event itself.
+ * - select: the selectItem() of the game.
+ * - play: SoundPlayback.play().
+ * - start: playback has started on the audio thread.
+ *
+ * The start is marked when the player is told to start, i.e. when SoundPool.play(),
+ * AudioTrack.play() or MediaPlayer.start() is called, or when a clip is handed to the
+ * PcmMixer while its track is already playing. The time until the sound is audible, the
+ * buffers and the output latency of the device, comes on top and is not measured. The
+ * numbers are the latency of the app, not the output latency.
+ *
+ * Each stage is counted in a LatencyCounter, so p50, p95 and p99 are kept in memory.
+ * They are written to tap_latency.json in the external files directory of the app once
+ * the app is no longer visible, which can be read with:
+ *     adb pull /sdcard/Android/data/com.alchemistmoz.balochi/files/tap_latency.json
+ *
+ * Taps whose sound was requested more than SLOW_TAP_TO_PLAY_MS after them are counted
+ * in the stages like all others, so the stalls show up in the percentiles, and once more
+ * on their own in slowTotal. A few of those may be sounds that weren't triggered by the
+ * tap, e.g. the next word after an animation, which slowTotal tells apart.
+ *
+ * Marking a tap only stores its time, and the counters don't allocate, so the
+ * measurements are kept on in release builds as well.
+ */
+public final class TapLatency {
+
+    // A sound that is requested later than this after the tap is counted as slow
+    private static final int SLOW_TAP_TO_PLAY_MS = 250;
+
+    private static final String EXPORT_FILE = "tap_latency.json";
+
+    private static final String TAG = "TapLatency";
+
+    // Stages of a tap, index of their counters
+    private static final int STAGE_TAP_TO_SELECT = 0;
+    private static final int STAGE_SELECT_TO_PLAY = 1;
+    private static final int STAGE_PLAY_TO_START = 2;
+    private static final int STAGE_TOTAL = 3;
+    private static final int STAGE_SLOW_TOTAL = 4;
+
+    private static final String[] STAGE_NAMES = {"tapToSelect", "selectToPlay", "playToStart", "total", "slowTotal"};
+
+    /**
+     * The times of the tap that triggered a sound. It is handed to the audio thread
+     * together with the request and counted once the sound has started.
+     */
+    static final class Trace {
+
+        final String activity;
+        final long tapTime;
+
+        // 0 if the tap didn't go through the selectItem() of a game
+        final long selectTime;
+
+        // Whether the sound was requested more than SLOW_TAP_TO_PLAY_MS after the tap
+        final boolean slow;
+
+        private Trace(String activity, long tapTime, long selectTime, boolean slow) {
+            this.activity = activity;
+            this.tapTime = tapTime;
+            this.selectTime = selectTime;
+            this.slow = slow;
+        }
+    }
+
+    // Only touched on the main thread
+
+    // Uptime of the last tap and its selection, 0 if none
+    private static long tapTime;
+    private static long selectTime;
+
+    // Name of the activity that is resumed, the taps are counted for it
+    private static String activityName = "unknown";
+
+    // Activity name -> counters of the stages, guarded by the class
+    private static final Map<String, LatencyCounter[]> counters = new HashMap<>();
+
+    // Writes the export file off the main thread
+    private static ExecutorService exportExecutor;
+
+    /**
+     * Prevent user from instantiating the class.
+     */
+    private TapLatency() {
+        // Empty
+    }
+
+    /**
+     * Mark that the user has tapped now. Call first thing in the click listener.
+     */
+    public static void markTap() {
+        markTap(SystemClock.uptimeMillis());
+    }
+
+    /**
+     * Mark that the user has tapped at the given time.
+     *
+     * @param eventTime - uptime of the tap, e.g. MotionEvent.getEventTime() of the ACTION_UP.
+     */
+    public static void markTap(long eventTime) {
+        tapTime = eventTime;
+        selectTime = 0;
+    }
+
+    /**
+     * Mark that the game has started handling the tap. Call first thing in selectItem().
+     */
+    public static void markSelect() {
+        if (tapTime != 0) selectTime = SystemClock.uptimeMillis();
+    }
+
+    /**
+     * @param activity that has been resumed, the next taps are counted for it.
+     */
+    static void setActivity(Activity activity) {
+        activityName = activity.getClass().getSimpleName();
+    }
+
+    /**
+     * Take the tap that triggered the sound that is played now. The marks are cleared,
+     * so that the tap is only counted for its first sound.
+     *
+     * @return trace of the tap, or null if the sound wasn't triggered by a tap.
+     */
+    static Trace takeTrace() {
+        if (tapTime == 0) return null;
+
+        boolean slow = SystemClock.uptimeMillis() - tapTime > SLOW_TAP_TO_PLAY_MS;
+        Trace trace = new Trace(activityName, tapTime, selectTime, slow);
+
+        tapTime = 0;
+        selectTime = 0;
+        return trace;
+    }
+
+    /**
+     * Count the stages of the given tap. Called on the audio thread.
+     *
+     * @param trace - of the tap that triggered the sound.
+     * @param playTime - uptime at which SoundPlayback.play() was called.
+     * @param startTime - uptime at which playback has started.
+     */
+    static synchronized void record(Trace trace, long playTime, long startTime) {
+        LatencyCounter[] stages = counters.get(trace.activity);
+
+        if (stages == null) {
+            stages = new LatencyCounter[STAGE_NAMES.length];
+            for (int i = 0; i < stages.length; i++) {
+                stages[i] = new LatencyCounter();
+            }
+            counters.put(trace.activity, stages);
+        }
+
+        // Without a selection, the time from the tap until play() is counted as selectToPlay
+        if (trace.selectTime != 0) {
+            stages[STAGE_TAP_TO_SELECT].record(trace.selectTime - trace.tapTime);
+            stages[STAGE_SELECT_TO_PLAY].record(playTime - trace.selectTime);
+        } else {
+            stages[STAGE_SELECT_TO_PLAY].record(playTime - trace.tapTime);
+        }
+
+        stages[STAGE_PLAY_TO_START].record(startTime - playTime);
+        stages[STAGE_TOTAL].record(startTime - trace.tapTime);
+
+        if (trace.slow) stages[STAGE_SLOW_TOTAL].record(startTime - trace.tapTime);
+    }
+
+    /**
+     * @param activity - simple class name of the activity.
+     * @param percent - of the taps, e.g. 95.
+     * @return time in milliseconds from the tap until the sound has started that the given
+     *         percent of the taps in the activity didn't exceed, 0 if none have been counted.
+     */
+    public static synchronized long getPercentile(String activity, int percent) {
+        LatencyCounter[] stages = counters.get(activity);
+
+        return stages != null ? stages[STAGE_TOTAL].getPercentile(percent) : 0;
+    }
+
+    /**
+     * Write the counters of all activities to the export file in the background.
+     * Called by SoundPlayback once the app is no longer visible.
+     *
+     * @param context of the application.
+     */
+    static void export(Context context) {
+        final String json;
+
+        synchronized (TapLatency.class) {
+            if (counters.isEmpty()) return;
+
+            json = toJson();
+        }
+
+        File directory = context.getExternalFilesDir(null);
+        final File file = new File(directory != null ? directory : context.getFilesDir(), EXPORT_FILE);
+
+        if (exportExecutor == null) {
+            exportExecutor = Executors.newSingleThreadExecutor();
+        }
+
+        exportExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                write(file, json);
+            }
+        });
+    }
+
+    /**
+     * @return the counters of all activities as a JSON object, keyed by activity and stage.
+     */
+    private static String toJson() {
+        StringWriter stringWriter = new StringWriter();
+        JsonWriter writer = new JsonWriter(stringWriter);
+        writer.setIndent("  ");
+
+        try {
+            writer.beginObject();
+            writer.name("uptime").value(SystemClock.uptimeMillis());
+            writer.name("activities").beginObject();
+
+            for (Map.Entry<String, LatencyCounter[]> entry : counters.entrySet()) {
+                writer.name(entry.getKey()).beginObject();
+
+                for (int i = 0; i < STAGE_NAMES.length; i++) {
+                    writer.name(STAGE_NAMES[i]);
+                    entry.getValue()[i].writeJson(writer);
+                }
+                writer.endObject();
+            }
+
+            writer.endObject();
+            writer.endObject();
+            writer.close();
+        } catch (IOException e) {
+            // Not thrown by a StringWriter
+        }
+
+        return stringWriter.toString();
+    }
+
+    private static void write(File file, String json) {
+        Writer writer = null;
+
+        try {
+            writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+            writer.write(json);
+        } catch (IOException e) {
+            if (BuildConfig.DEBUG) Log.d(TAG, "Could not write " + file, e);
+        } finally {
+            try {
+                if (writer != null) writer.close();
+            } catch (IOException e) {
+                // Nothing left to do
+            }
+        }
+    }
+}
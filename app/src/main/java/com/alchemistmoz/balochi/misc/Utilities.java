@@ -1,8 +1,10 @@
 package com.alchemistmoz.balochi.misc;
 
+import android.app.ActivityManager;
 import android.content.Context;
 import android.content.Intent;
 import android.os.Handler;
+import android.os.Looper;
 import android.support.v7.app.AppCompatActivity;
 import android.support.v7.widget.LinearLayoutManager;
 import android.support.v7.widget.RecyclerView;
@@ -21,11 +23,22 @@ import com.alchemistmoz.balochi.R;
  */
 public final class Utilities {
 
-    // Allows for touch events to be temporarily disabled
-    private static boolean touchEnabled = true;
+    // RAM classes of the devices, that the budgets of the caches depend on
+    public static final int RAM_CLASS_LOW_RAM = 0;
+    public static final int RAM_CLASS_SMALL = 1;
+    public static final int RAM_CLASS_MEDIUM = 2;
+    public static final int RAM_CLASS_LARGE = 3;
 
-    // To be used for delaying posts
-    private static Handler handler = new Handler();
+    // Memory classes in MB that separate the small, medium and large devices
+    private static final int MEMORY_CLASS_MEDIUM = 128;
+    private static final int MEMORY_CLASS_LARGE = 256;
+
+    // To be used for delaying posts, on the main thread whichever thread loads the class,
+    // e.g. the audio thread for the budget of the PcmCache
+    private static Handler handler = new Handler(Looper.getMainLooper());
+
+    // Starts the selected menu activity once its sound has ended
+    private static PlaybackWaiter playbackWaiter = new PlaybackWaiter();
 
     /**
      * Prevent user from instantiating the class.
@@ -35,17 +48,41 @@ public final class Utilities {
     }
 
     /**
-     * @param enabled - Status of touch events.
+     * @return the RAM class of the device, one of the RAM_CLASS_ constants.
+     */
+    public static int getRamClass(Context context) {
+        ActivityManager activityManager = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+
+        if (activityManager.isLowRamDevice()) {
+            return RAM_CLASS_LOW_RAM;
+        } else if (activityManager.getMemoryClass() < MEMORY_CLASS_MEDIUM) {
+            return RAM_CLASS_SMALL;
+        } else if (activityManager.getMemoryClass() < MEMORY_CLASS_LARGE) {
+            return RAM_CLASS_MEDIUM;
+        } else {
+            return RAM_CLASS_LARGE;
+        }
+    }
+
+    /**
+     * @return the budget in bytes of a cache for the RAM class of the device, out of the
+     *         given integer resources in KB, one for each class.
      */
-    public static void setTouchEnabled(boolean enabled) {
-        touchEnabled = enabled;
+    public static int getByteBudget(Context context, int lowRamId, int smallId, int mediumId, int largeId) {
+        int[] ids = {lowRamId, smallId, mediumId, largeId};
+
+        return context.getResources().getInteger(ids[getRamClass(context)]) * 1024;
     }
 
     /**
-     * @return current status of touch events.
+     * Create the InputArbiter of a menu activity. Taps are dropped while the sound of
+     * the selected menu item is playing, a kept tap would start a second activity.
+     *
+     * @param activity - of the menu, the InputArbiter is scoped to it.
+     * @return InputArbiter to be used for the menu of the activity.
      */
-    private static boolean isTouchEnabled() {
-        return touchEnabled;
+    public static InputArbiter createMenuInputArbiter(AppCompatActivity activity) {
+        return new InputArbiter(activity, InputArbiter.POLICY_DROP, 0, playbackWaiter);
     }
 
     /**
@@ -78,8 +115,9 @@ public final class Utilities {
      * Add ItemClickSupport for menu items.
      *
      * @param recyclerView of the menu activity.
+     * @param inputArbiter of the menu activity.
      */
-    public static void addMenuItemClickSupport(RecyclerView recyclerView) {
+    public static void addMenuItemClickSupport(RecyclerView recyclerView, final InputArbiter inputArbiter) {
 
         ItemClickSupport.addTo(recyclerView).setOnItemClickListener(new ItemClickSupport.OnItemClickListener() {
             @Override
@@ -90,7 +128,7 @@ public final class Utilities {
 
                 // Play the sound of the selected menu item and start the correlated activity
                 if (adapter != null) {
-                    startMenuActivity(v.getContext(), v, adapter, position);
+                    startMenuActivity(v.getContext(), v, adapter, position, inputArbiter);
                 }
 
             }
@@ -98,45 +136,62 @@ public final class Utilities {
     }
 
     /**
-     * Play the sound correlated to the selected menu item and then start its activity.
+     * Hand the selection of a menu item to the InputArbiter, which drops it while the
+     * menu is busy and counts it either way.
      *
      * @param context - Activity context
      * @param view - Selected view
      * @param adapter - recyclerView adapter
      * @param position - Position of the users selection
+     * @param inputArbiter - of the menu activity
      */
-    private static void startMenuActivity(final Context context, View view, MainAdapter adapter, int position) {
+    private static void startMenuActivity(final Context context, final View view, MainAdapter adapter, int position,
+                                          final InputArbiter inputArbiter) {
         // Store the current Category object that the MainAdapter is iterating, using
         // the ArrayList method get(). Input parameter is int index, which corresponds
         // to the given position the user clicked on.
         final Category selectedCategory = adapter.getItem(position);
 
-        if (isTouchEnabled()) {
-
-            setTouchEnabled(false);
+        inputArbiter.submit(new Runnable() {
+            @Override
+            public void run() {
+                playMenuItem(context, view, selectedCategory, inputArbiter);
+            }
+        });
+    }
 
-            Utilities.runOnTouchAnim(context, view);
+    /**
+     * Play the sound correlated to the selected menu item and then start its activity.
+     *
+     * @param context - Activity context
+     * @param view - Selected view
+     * @param selectedCategory - of the selected menu item
+     * @param inputArbiter - of the menu activity
+     */
+    private static void playMenuItem(final Context context, View view, final Category selectedCategory,
+                                     final InputArbiter inputArbiter) {
 
-            // Initialize playback of the sound related to the item the user has selected
-            SoundPlayback.play(context, selectedCategory.getAudioResourceID());
+        inputArbiter.setEnabled(false);
 
-            // Delay menu item touch execution so that the onTouchAnimation runs more smoothly
-            handler.postDelayed(new Runnable() {
-                @Override
-                public void run() {
+        Utilities.runOnTouchAnim(context, view);
 
-                    setTouchEnabled(true);
+        // Initialize playback of the sound related to the item the user has selected.
+        // Delay menu item touch execution until the sound has ended, so that
+        // the onTouchAnimation runs more smoothly.
+        playbackWaiter.play(context, selectedCategory.getAudioResourceID(), new Runnable() {
+            @Override
+            public void run() {
 
-                    // Create a new intent to open the selected category activity
-                    Intent intent = new Intent(context, selectedCategory.getClassName());
+                inputArbiter.setEnabled(true);
 
-                    // Start the new activity
-                    context.startActivity(intent);
+                // Create a new intent to open the selected category activity
+                Intent intent = new Intent(context, selectedCategory.getClassName());
 
-                }
-            }, SoundPlayback.getSoundDuration());
+                // Start the new activity
+                context.startActivity(intent);
 
-        }
+            }
+        });
     }
 
     /**
@@ -149,6 +204,8 @@ public final class Utilities {
             handler.removeCallbacksAndMessages(null);
 
         }
+
+        playbackWaiter.cancel();
     }
 
     /**
@@ -168,22 +225,24 @@ public final class Utilities {
 
     /**
      * This animation is used for sliding recyclerView items in from left to right.
+     * Input is disabled during the animation.
      *
      * @param recyclerView - The recyclerView to apply animation to
+     * @param inputArbiter - of the menu activity
      */
-    public static void runSlideLeftAnim(final RecyclerView recyclerView) {
+    public static void runSlideLeftAnim(final RecyclerView recyclerView, final InputArbiter inputArbiter) {
         int resId = R.anim.layout_animation_slide_left;
         LayoutAnimationController animation = AnimationUtils.loadLayoutAnimation(recyclerView.getContext(), resId);
 
         Animation.AnimationListener animationListener = new Animation.AnimationListener() {
             @Override
             public void onAnimationStart(Animation animation) {
-                setTouchEnabled(false);
+                inputArbiter.setEnabled(false);
             }
 
             @Override
             public void onAnimationEnd(Animation animation) {
-                setTouchEnabled(true);
+                inputArbiter.setEnabled(true);
             }
 
             @Override
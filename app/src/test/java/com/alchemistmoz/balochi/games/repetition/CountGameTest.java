@@ -0,0 +1,69 @@
+package com.alchemistmoz.balochi.games.repetition;
+
+import com.alchemistmoz.balochi.R;
+import com.alchemistmoz.balochi.misc.SoundSequence;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests of the sequences that the CountGame plays for the final count.
+ */
+public class CountGameTest {
+
+    @Test
+    public void recorded_playsRecordingAlone() {
+        SoundSequence sequence = CountGame.createFinalCountSequence(R.raw.numbers_two,
+                R.raw.numbers_two_carrots, R.raw.fruitveggies_carrot);
+
+        assertEquals(new SoundSequence().add(R.raw.numbers_two_carrots), sequence);
+    }
+
+    @Test
+    public void notRecorded_splicesNumberAndNoun() {
+        SoundSequence sequence = CountGame.createFinalCountSequence(R.raw.numbers_two,
+                0, R.raw.fruitveggies_carrot);
+
+        SoundSequence expected = new SoundSequence()
+                .add(R.raw.numbers_two)
+                .addCrossfade(30)
+                .add(R.raw.fruitveggies_carrot);
+
+        assertEquals(2, sequence.size());
+        assertEquals(expected, sequence);
+    }
+
+    @Test
+    public void notRecorded_hasNoCelebration() {
+        SoundSequence sequence = CountGame.createFinalCountSequence(R.raw.numbers_ten,
+                0, R.raw.fruitveggies_apple);
+
+        assertNotEquals(new SoundSequence()
+                .add(R.raw.numbers_ten)
+                .addCrossfade(30)
+                .add(R.raw.fruitveggies_apple)
+                .addGap(100)
+                .add(R.raw.celebration_short), sequence);
+    }
+
+    @Test
+    public void splicedSequences_areEqualForSameWords() {
+        SoundSequence first = CountGame.createFinalCountSequence(R.raw.numbers_nine,
+                0, R.raw.fruitveggies_strawberry);
+        SoundSequence second = CountGame.createFinalCountSequence(R.raw.numbers_nine,
+                0, R.raw.fruitveggies_strawberry);
+
+        // The prefetched sequence is found again when it is played
+        assertEquals(first, second);
+        assertEquals(first.hashCode(), second.hashCode());
+        assertEquals(first.toString(), second.toString());
+    }
+
+    @Test
+    public void splicedSequences_differByNoun() {
+        assertNotEquals(
+                CountGame.createFinalCountSequence(R.raw.numbers_two, 0, R.raw.fruitveggies_carrot),
+                CountGame.createFinalCountSequence(R.raw.numbers_two, 0, R.raw.fruitveggies_lemon));
+    }
+}
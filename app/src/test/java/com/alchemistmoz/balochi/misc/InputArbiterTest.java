@@ -0,0 +1,334 @@
+package com.alchemistmoz.balochi.misc;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests of the policies of the InputArbiter. The arbiters have no activity,
+ * and the kept taps are run by a fake executor once the test runs its posted steps.
+ */
+public class InputArbiterTest {
+
+    // Taps that have been handled, in order
+    private final ArrayList<String> handled = new ArrayList<>();
+
+    // Steps that the arbiters have posted, run by runPosted()
+    private final ArrayList<Runnable> posted = new ArrayList<>();
+
+    private final Executor executor = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            posted.add(command);
+        }
+    };
+
+    @Test
+    public void enabled_handlesRightAway() {
+        for (int policy : new int[] {InputArbiter.POLICY_DROP, InputArbiter.POLICY_QUEUE, InputArbiter.POLICY_INTERRUPT}) {
+            handled.clear();
+            InputArbiter arbiter = create(policy, 2, null);
+
+            assertTrue(arbiter.isEnabled());
+            assertTrue(arbiter.submit(tap("a")));
+            assertEquals("a", handled.get(0));
+            assertEquals(1, arbiter.getAcceptedCount());
+            assertEquals(0, arbiter.getDroppedCount());
+        }
+    }
+
+    @Test
+    public void drop_ignoresTapsWhileBusy() {
+        InputArbiter arbiter = create(InputArbiter.POLICY_DROP, 2, null);
+        arbiter.setEnabled(false);
+
+        assertFalse(arbiter.submit(tap("a")));
+        assertFalse(arbiter.submit(tap("b")));
+
+        arbiter.setEnabled(true);
+
+        assertTrue(handled.isEmpty());
+        assertTrue(arbiter.isEnabled());
+        assertEquals(0, arbiter.getAcceptedCount());
+        assertEquals(2, arbiter.getDroppedCount());
+    }
+
+    @Test
+    public void queue_keepsTapsUpToDepth() {
+        InputArbiter arbiter = create(InputArbiter.POLICY_QUEUE, 2, null);
+        arbiter.setEnabled(false);
+
+        assertTrue(arbiter.submit(tap("a")));
+        assertTrue(arbiter.submit(tap("b")));
+        assertFalse(arbiter.submit(tap("c")));
+
+        assertTrue(handled.isEmpty());
+        assertEquals(0, arbiter.getAcceptedCount());
+        assertEquals(1, arbiter.getDroppedCount());
+    }
+
+    @Test
+    public void queue_keptTapsGoFirst() {
+        InputArbiter arbiter = create(InputArbiter.POLICY_QUEUE, 2, null);
+        arbiter.setEnabled(false);
+        arbiter.submit(tap("a"));
+
+        // The kept tap is handled after the current step, a new tap has to wait behind it
+        arbiter.setEnabled(true);
+
+        assertFalse(arbiter.isEnabled());
+        assertTrue(arbiter.submit(tap("b")));
+        assertFalse(arbiter.submit(tap("c")));
+        assertTrue(handled.isEmpty());
+    }
+
+    @Test
+    public void queue_runsKeptTapsInOrder() {
+        InputArbiter arbiter = create(InputArbiter.POLICY_QUEUE, 2, null);
+        arbiter.setEnabled(false);
+        arbiter.submit(tap("a"));
+        arbiter.submit(tap("b"));
+
+        arbiter.setEnabled(true);
+        runPosted();
+
+        assertEquals(2, handled.size());
+        assertEquals("a", handled.get(0));
+        assertEquals("b", handled.get(1));
+        assertTrue(arbiter.isEnabled());
+        assertEquals(2, arbiter.getAcceptedCount());
+        assertTrue(arbiter.toString().contains("2 kept"));
+    }
+
+    @Test
+    public void queue_stopsWhenKeptTapMakesGameBusy() {
+        final InputArbiter arbiter = create(InputArbiter.POLICY_QUEUE, 2, null);
+        arbiter.setEnabled(false);
+
+        // The first kept tap plays a sound, so the game is busy again
+        arbiter.submit(new Runnable() {
+            @Override
+            public void run() {
+                handled.add("a");
+                arbiter.setEnabled(false);
+            }
+        });
+        arbiter.submit(tap("b"));
+
+        arbiter.setEnabled(true);
+        runPosted();
+
+        assertEquals(1, handled.size());
+        assertFalse(arbiter.isEnabled());
+
+        // The sound has ended
+        arbiter.setEnabled(true);
+        runPosted();
+
+        assertEquals(2, handled.size());
+        assertEquals("b", handled.get(1));
+    }
+
+    @Test
+    public void queue_zeroDepth_dropsLikeDrop() {
+        InputArbiter arbiter = create(InputArbiter.POLICY_QUEUE, 0, null);
+        arbiter.setEnabled(false);
+
+        assertFalse(arbiter.submit(tap("a")));
+        assertEquals(1, arbiter.getDroppedCount());
+    }
+
+    @Test
+    public void clearQueue_forgetsKeptTaps() {
+        InputArbiter arbiter = create(InputArbiter.POLICY_QUEUE, 3, null);
+        arbiter.setEnabled(false);
+        arbiter.submit(tap("a"));
+        arbiter.submit(tap("b"));
+
+        arbiter.clearQueue();
+
+        assertEquals(2, arbiter.getDroppedCount());
+
+        // The queue has room again
+        assertTrue(arbiter.submit(tap("c")));
+        assertTrue(arbiter.submit(tap("d")));
+        assertTrue(arbiter.submit(tap("e")));
+        assertFalse(arbiter.submit(tap("f")));
+
+        arbiter.reset();
+
+        assertTrue(arbiter.isEnabled());
+        assertEquals(6, arbiter.getDroppedCount());
+
+        assertTrue(arbiter.submit(tap("g")));
+        assertEquals(1, handled.size());
+        assertEquals("g", handled.get(0));
+    }
+
+    @Test
+    public void clearQueue_afterEnable_keptTapsNeverRun() {
+        InputArbiter arbiter = create(InputArbiter.POLICY_QUEUE, 2, null);
+        arbiter.setEnabled(false);
+        arbiter.submit(tap("a"));
+
+        // The kept tap is posted, then a new round starts before it is handled
+        arbiter.setEnabled(true);
+        arbiter.clearQueue();
+        runPosted();
+
+        assertTrue(handled.isEmpty());
+        assertTrue(arbiter.isEnabled());
+        assertEquals(0, arbiter.getAcceptedCount());
+        assertEquals(1, arbiter.getDroppedCount());
+    }
+
+    @Test
+    public void interrupt_skipsSoundAndHandlesTap() {
+        InputArbiter[] arbiter = new InputArbiter[1];
+        FakeWaiter waiter = new FakeWaiter(arbiter, 1, false);
+
+        arbiter[0] = create(InputArbiter.POLICY_INTERRUPT, 2, waiter);
+        arbiter[0].setEnabled(false);
+
+        assertTrue(arbiter[0].submit(tap("a")));
+        assertEquals(1, waiter.skipCount);
+        assertEquals("a", handled.get(0));
+        assertEquals(1, arbiter[0].getAcceptedCount());
+        assertTrue(arbiter[0].toString().contains("1 interrupted a sound"));
+    }
+
+    @Test
+    public void interrupt_skipsChainedSounds() {
+        InputArbiter[] arbiter = new InputArbiter[1];
+
+        // Each skipped sound starts the next one, e.g. a word followed by a sequence
+        FakeWaiter waiter = new FakeWaiter(arbiter, 3, false);
+
+        arbiter[0] = create(InputArbiter.POLICY_INTERRUPT, 2, waiter);
+        arbiter[0].setEnabled(false);
+
+        assertTrue(arbiter[0].submit(tap("a")));
+        assertEquals(3, waiter.skipCount);
+        assertEquals(1, handled.size());
+    }
+
+    @Test
+    public void interrupt_withoutSound_dropsTap() {
+        InputArbiter[] arbiter = new InputArbiter[1];
+        FakeWaiter waiter = new FakeWaiter(arbiter, 0, false);
+
+        // Busy with e.g. an animation
+        arbiter[0] = create(InputArbiter.POLICY_INTERRUPT, 2, waiter);
+        arbiter[0].setEnabled(false);
+
+        assertFalse(arbiter[0].submit(tap("a")));
+        assertTrue(handled.isEmpty());
+        assertEquals(1, arbiter[0].getDroppedCount());
+
+        // No waiter at all
+        InputArbiter noWaiter = create(InputArbiter.POLICY_INTERRUPT, 2, null);
+        noWaiter.setEnabled(false);
+
+        assertFalse(noWaiter.submit(tap("b")));
+    }
+
+    @Test
+    public void interrupt_newRound_dropsTap() {
+        InputArbiter[] arbiter = new InputArbiter[1];
+
+        // The skipped sound was the last one of the round, which starts a new round
+        FakeWaiter waiter = new FakeWaiter(arbiter, 1, true);
+
+        arbiter[0] = create(InputArbiter.POLICY_INTERRUPT, 2, waiter);
+        arbiter[0].setEnabled(false);
+
+        assertFalse(arbiter[0].submit(tap("a")));
+        assertEquals(1, waiter.skipCount);
+        assertTrue(handled.isEmpty());
+        assertTrue(arbiter[0].isEnabled());
+    }
+
+    @Test
+    public void interrupt_neverQueues() {
+        InputArbiter[] arbiter = new InputArbiter[1];
+        FakeWaiter waiter = new FakeWaiter(arbiter, 0, false);
+
+        arbiter[0] = create(InputArbiter.POLICY_INTERRUPT, 2, waiter);
+        arbiter[0].setEnabled(false);
+        arbiter[0].submit(tap("a"));
+        arbiter[0].setEnabled(true);
+
+        // Nothing was kept, so the next tap is handled right away
+        assertTrue(arbiter[0].isEnabled());
+        assertTrue(arbiter[0].submit(tap("b")));
+        assertEquals("b", handled.get(0));
+    }
+
+    private InputArbiter create(int policy, int maxQueueDepth, PlaybackWaiter playbackWaiter) {
+        return new InputArbiter(null, policy, maxQueueDepth, playbackWaiter, executor);
+    }
+
+    /**
+     * Run the steps that were posted so far, as the main thread would once the current
+     * step of the game has finished.
+     */
+    private void runPosted() {
+        ArrayList<Runnable> steps = new ArrayList<>(posted);
+        posted.clear();
+
+        for (Runnable step : steps) {
+            step.run();
+        }
+    }
+
+    private Runnable tap(final String name) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                handled.add(name);
+            }
+        };
+    }
+
+    /**
+     * Waits on a number of sounds, the game is enabled again once the last one is skipped.
+     */
+    private static final class FakeWaiter extends PlaybackWaiter {
+
+        private final InputArbiter[] arbiter;
+        private final boolean newRound;
+
+        private int sounds;
+        int skipCount;
+
+        /**
+         * @param arbiter - holds the arbiter of the game, once it has been created.
+         * @param sounds - number of sounds that are played one after the other.
+         * @param newRound - whether the last sound starts a new round.
+         */
+        FakeWaiter(InputArbiter[] arbiter, int sounds, boolean newRound) {
+            this.arbiter = arbiter;
+            this.sounds = sounds;
+            this.newRound = newRound;
+        }
+
+        @Override
+        public boolean isWaiting() {
+            return sounds > 0;
+        }
+
+        @Override
+        public void skip() {
+            skipCount++;
+            sounds--;
+
+            if (sounds == 0) {
+                if (newRound) arbiter[0].clearQueue();
+                arbiter[0].setEnabled(true);
+            }
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.alchemistmoz.balochi.misc;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests of the percentiles of the LatencyCounter, in particular at the edges
+ * of its histogram.
+ */
+public class LatencyCounterTest {
+
+    @Test
+    public void empty_hasNoPercentiles() {
+        LatencyCounter counter = new LatencyCounter();
+
+        assertEquals(0, counter.getCount());
+        assertEquals(0, counter.getPercentile(0));
+        assertEquals(0, counter.getPercentile(50));
+        assertEquals(0, counter.getPercentile(100));
+        assertEquals("no sounds", counter.toString());
+    }
+
+    @Test
+    public void single_isEveryPercentile() {
+        LatencyCounter counter = new LatencyCounter();
+        counter.record(42);
+
+        assertEquals(1, counter.getCount());
+        assertEquals(42, counter.getPercentile(0));
+        assertEquals(42, counter.getPercentile(50));
+        assertEquals(42, counter.getPercentile(99));
+        assertEquals(42, counter.getPercentile(100));
+    }
+
+    @Test
+    public void negative_isCountedAsZero() {
+        LatencyCounter counter = new LatencyCounter();
+        counter.record(-5);
+
+        assertEquals(0, counter.getPercentile(50));
+    }
+
+    @Test
+    public void fineBuckets_areExact() {
+        LatencyCounter counter = new LatencyCounter();
+
+        for (int latency = 1; latency <= 99; latency++) {
+            counter.record(latency);
+        }
+
+        assertEquals(50, counter.getPercentile(50));
+        assertEquals(95, counter.getPercentile(95));
+        assertEquals(99, counter.getPercentile(100));
+    }
+
+    @Test
+    public void coarseBuckets_roundUpButNotAboveMax() {
+        LatencyCounter counter = new LatencyCounter();
+        counter.record(151);
+        counter.record(400);
+
+        // 151 is counted in the bucket of 150 to 159 ms
+        assertEquals(159, counter.getPercentile(50));
+        assertEquals(400, counter.getPercentile(100));
+
+        counter.reset();
+        counter.record(151);
+
+        // The only latency is also the max
+        assertEquals(151, counter.getPercentile(50));
+    }
+
+    @Test
+    public void topBucket_reportsMax() {
+        LatencyCounter counter = new LatencyCounter();
+        counter.record(1000);
+        counter.record(5000);
+
+        // Everything from a second on shares the last bucket, its limit is the max
+        assertEquals(5000, counter.getPercentile(50));
+        assertEquals(5000, counter.getPercentile(100));
+    }
+
+    @Test
+    public void topBucket_onlyReachedByTail() {
+        LatencyCounter counter = new LatencyCounter();
+
+        for (int i = 0; i < 99; i++) {
+            counter.record(10);
+        }
+        counter.record(3000);
+
+        assertEquals(10, counter.getPercentile(95));
+        assertEquals(10, counter.getPercentile(99));
+        assertEquals(3000, counter.getPercentile(100));
+    }
+
+    @Test
+    public void p99_ofFewSounds_isTheSlowest() {
+        LatencyCounter counter = new LatencyCounter();
+        counter.record(10);
+        counter.record(20);
+        counter.record(30);
+
+        assertEquals(20, counter.getPercentile(50));
+        assertEquals(30, counter.getPercentile(99));
+    }
+
+    @Test
+    public void reset_forgetsEverything() {
+        LatencyCounter counter = new LatencyCounter();
+        counter.record(5000);
+        counter.reset();
+
+        assertEquals(0, counter.getCount());
+        assertEquals(0, counter.getPercentile(99));
+
+        counter.record(7);
+
+        assertEquals(7, counter.getPercentile(100));
+        assertTrue(counter.toString().startsWith("first 7 ms"));
+    }
+}
@@ -0,0 +1,115 @@
+package com.alchemistmoz.balochi.misc;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests of the PcmResampler, for the length of the resampled clips and the
+ * gain of the sinc filter.
+ */
+public class PcmResamplerTest {
+
+    // Frames at each end of a clip that the filter reaches beyond, where it fades in and out
+    private static final int EDGE_FRAMES = 64;
+
+    @Test
+    public void sameRate_returnsSameClip() {
+        PcmClip clip = constantClip(100, 16000, 1, (short) 1000);
+
+        assertSame(clip, PcmResampler.resample(clip, 16000));
+    }
+
+    @Test
+    public void nullClip_returnsNull() {
+        assertNull(PcmResampler.resample(null, 48000));
+    }
+
+    @Test
+    public void upsampling_scalesLength() {
+        PcmClip clip = PcmResampler.resample(constantClip(1600, 16000, 1, (short) 0), 48000);
+
+        assertEquals(48000, clip.sampleRate);
+        assertEquals(1, clip.channels);
+        assertEquals(4800, clip.getFrameCount());
+        assertEquals(4800, clip.samples.length);
+    }
+
+    @Test
+    public void stereo_keepsChannelsInterleaved() {
+        PcmClip clip = PcmResampler.resample(constantClip(4410, 44100, 2, (short) 0), 48000);
+
+        assertEquals(2, clip.channels);
+        assertEquals(4800, clip.getFrameCount());
+        assertEquals(9600, clip.samples.length);
+    }
+
+    @Test
+    public void downsampling_scalesLength() {
+        PcmClip clip = PcmResampler.resample(constantClip(480, 48000, 1, (short) 0), 16000);
+
+        assertEquals(160, clip.getFrameCount());
+    }
+
+    @Test
+    public void fractionalRatio_roundsLengthDown() {
+        // 1001 frames at 44.1 kHz are 1089.66 frames at 48 kHz
+        PcmClip clip = PcmResampler.resample(constantClip(1001, 44100, 1, (short) 0), 48000);
+
+        assertEquals(1089, clip.getFrameCount());
+        assertEquals(22, clip.getDuration());
+    }
+
+    @Test
+    public void upsampling_keepsDcLevel() {
+        assertDcGain(16000, 48000, 1);
+        assertDcGain(44100, 48000, 2);
+    }
+
+    @Test
+    public void downsampling_keepsDcLevel() {
+        assertDcGain(48000, 16000, 1);
+    }
+
+    @Test
+    public void silence_staysSilent() {
+        PcmClip clip = PcmResampler.resample(constantClip(1000, 16000, 1, (short) 0), 48000);
+
+        for (short sample : clip.samples) {
+            assertEquals(0, sample);
+        }
+    }
+
+    @Test
+    public void fullScale_isClampedWithoutWrapping() {
+        PcmClip clip = PcmResampler.resample(constantClip(1000, 16000, 1, Short.MAX_VALUE), 48000);
+
+        for (int i = EDGE_FRAMES; i < clip.samples.length - EDGE_FRAMES; i++) {
+            assertTrue("Sample " + i + " wrapped around", clip.samples[i] > 0);
+        }
+    }
+
+    /**
+     * A constant clip is to keep its level within 0.1 %, apart from its edges.
+     */
+    private static void assertDcGain(int sourceRate, int targetRate, int channels) {
+        short level = 10000;
+        PcmClip clip = PcmResampler.resample(constantClip(sourceRate / 10, sourceRate, channels, level), targetRate);
+
+        int edge = EDGE_FRAMES * channels;
+
+        for (int i = edge; i < clip.samples.length - edge; i++) {
+            assertEquals("Sample " + i + " from " + sourceRate + " Hz to " + targetRate + " Hz",
+                    level, clip.samples[i], level * 0.001);
+        }
+    }
+
+    private static PcmClip constantClip(int frames, int sampleRate, int channels, short level) {
+        short[] samples = new short[frames * channels];
+        Arrays.fill(samples, level);
+
+        return new PcmClip(samples, sampleRate, channels);
+    }
+}